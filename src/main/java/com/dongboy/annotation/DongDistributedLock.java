@@ -1,5 +1,7 @@
 package com.dongboy.annotation;
 
+import com.dongboy.lock.LockMode;
+
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -21,4 +23,21 @@ public @interface DongDistributedLock {
 
     long lockTime() default -1;
 
+    // 未获取到锁时是否阻塞等待(最多waitTimeout)；为false时只尝试一次，失败立即拒绝
+    boolean blockable() default true;
+
+    // 本节点上同一个key同时等待加锁的线程数上限，超出的调用立即拒绝而不是排队；负数表示不限制
+    int maxWaiters() default -1;
+
+    // 未获取到锁时调用的降级方法名，需与被注解方法在同一个类中，参数列表相同或在末尾多一个DistributeLockException参数
+    // 为空时抛出DistributeLockException
+    String fallback() default "";
+
+    // 为true时value的每一项依次是层级锁路径的一层(可以是SpEL)，以"/"连接成一条路径，如 {"$'tenant:' + #tenantId", "$'order:' + #orderId"}
+    // 加锁时在各祖先层加意向模式，在最后一层加mode
+    boolean hierarchical() default false;
+
+    // 层级锁在路径最后一层的模式，只在hierarchical为true时生效
+    LockMode mode() default LockMode.X;
+
 }
@@ -3,6 +3,7 @@ package com.dongboy.aspect;
 import com.dongboy.annotation.DongDistributedLock;
 import com.dongboy.exception.DistributeLockException;
 import com.dongboy.exception.DistributedLockResponseCode;
+import com.dongboy.lock.DistributedHierarchicalLock;
 import com.dongboy.lock.DistributedLock;
 import com.dongboy.lock.DistributedMultiLock;
 import com.dongboy.lock.DistributedReentrantLock;
@@ -24,8 +25,10 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 import org.springframework.util.StringUtils;
 
 import javax.annotation.Resource;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -44,6 +47,12 @@ public class DongDistributedLockAspect {
     @Resource
     private DistributedLockService lockService;
 
+    // key -> 本节点正在等待加锁的线程数
+    private final Map<String, Integer> waiterCounts = new ConcurrentHashMap<>();
+
+    // 被注解方法 -> 降级方法
+    private final Map<Method, Method> fallbackMethods = new ConcurrentHashMap<>();
+
     @Pointcut("@annotation(com.dongboy.annotation.DongDistributedLock)")
     public void dongDistributedLock() {
 
@@ -57,12 +66,18 @@ public class DongDistributedLockAspect {
         String[] lockKeys = annotation.value();
         long waitTimeout = annotation.waitTimeout();
         long lockTime = annotation.lockTime();
-        lockKeys = parseSpELLockKeys(prefix, lockKeys, discoverer.getParameterNames(method), joinPoint.getArgs());
         if (lockKeys.length == 0) {
             throw new IllegalArgumentException("No lock key!");
         }
         DistributedLock lock;
-        if (lockKeys.length == 1) {
+        if (annotation.hierarchical()) {
+            String path = parseHierarchicalPath(prefix, lockKeys, discoverer.getParameterNames(method), joinPoint.getArgs());
+            log.info("distributed hierarchical lock with path:" + path + ", mode:" + annotation.mode());
+            lockService.checkLockKeyLegal(path);
+            lock = DistributedHierarchicalLock.get(path, annotation.mode(), lockService);
+        } else if ((lockKeys = parseSpELLockKeys(prefix, lockKeys, discoverer.getParameterNames(method), joinPoint.getArgs())).length == 0) {
+            throw new IllegalArgumentException("No lock key!");
+        } else if (lockKeys.length == 1) {
             log.info("distributed lock with key:" + lockKeys[0]);
             lockService.checkLockKeyLegal(lockKeys[0]);
             lock = DistributedReentrantLock.get(lockKeys[0], lockService);
@@ -71,8 +86,12 @@ public class DongDistributedLockAspect {
             lockService.checkLockKeyLegal(lockKeys);
             lock = DistributedMultiLock.get(Arrays.asList(lockKeys), lockService);
         }
+        DistributeLockException rejected = acquire(lock, annotation, waitTimeout, lockTime);
+        if (rejected != null) {
+            log.info("distributed lock not acquired, key:" + lock.getLockKey() + ", reason:" + rejected.getCode());
+            return reject(joinPoint, method, annotation, rejected);
+        }
         try {
-            lock.lock(waitTimeout, lockTime);
             if (TransactionSynchronizationManager.isActualTransactionActive()) {
                 if (!TransactionSynchronizationManager.isSynchronizationActive()) {
                     TransactionSynchronizationManager.initSynchronization();
@@ -102,6 +121,94 @@ public class DongDistributedLockAspect {
         }
     }
 
+    /**
+     * 按注解配置加锁，未获取到锁时返回拒绝原因，获取成功返回null
+     */
+    private DistributeLockException acquire(DistributedLock lock, DongDistributedLock annotation, long waitTimeout, long lockTime) {
+        if (!annotation.blockable()) {
+            return lock.tryLock(waitTimeout, lockTime) ? null : new DistributeLockException(DistributedLockResponseCode.LOCK_NOT_ACQUIRED);
+        }
+        // 先尝试一次，立即获得锁(包括重入)的调用不占用等待名额；探测失败不提交事件，等待结果由随后的lock记录
+        if (lock.probeLock(lockTime)) {
+            return null;
+        }
+        // 当前线程已持有该锁(如嵌套调用)时不受等待者上限限制，否则可能被自己挡在门外
+        int maxWaiters = lock.isHeldByCurrentThread() ? -1 : annotation.maxWaiters();
+        String lockKey = lock.getLockKey();
+        if (maxWaiters >= 0) {
+            boolean[] admitted = {false};
+            waiterCounts.compute(lockKey, (k, waiters) -> {
+                int current = waiters == null ? 0 : waiters;
+                if (current >= maxWaiters) {
+                    return waiters;
+                }
+                admitted[0] = true;
+                return current + 1;
+            });
+            if (!admitted[0]) {
+                // 等待者已满，立即拒绝，避免请求线程在热点key上堆积
+                return new DistributeLockException(DistributedLockResponseCode.TOO_MANY_WAITERS);
+            }
+        }
+        try {
+            lock.lock(waitTimeout, lockTime);
+            return null;
+        } catch (DistributeLockException e) {
+            if (e.getCode() == DistributedLockResponseCode.WAIT_TIMEOUT_EXCEEDED
+                    || e.getCode() == DistributedLockResponseCode.DEADLOCK_VICTIM) {
+                return e;
+            }
+            throw e;
+        } finally {
+            if (maxWaiters >= 0) {
+                waiterCounts.computeIfPresent(lockKey, (k, waiters) -> waiters <= 1 ? null : waiters - 1);
+            }
+        }
+    }
+
+    /**
+     * 未获取到锁：有降级方法时调用降级方法，否则抛出拒绝原因
+     */
+    private Object reject(ProceedingJoinPoint joinPoint, Method method, DongDistributedLock annotation,
+                          DistributeLockException rejected) throws Throwable {
+        if (!StringUtils.hasText(annotation.fallback())) {
+            throw rejected;
+        }
+        Object target = joinPoint.getTarget();
+        Method fallback = fallbackMethods.computeIfAbsent(method, m -> findFallbackMethod(target.getClass(), m, annotation.fallback()));
+        Object[] args = joinPoint.getArgs();
+        if (fallback.getParameterCount() > args.length) {
+            args = Arrays.copyOf(args, args.length + 1);
+            args[args.length - 1] = rejected;
+        }
+        try {
+            return fallback.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private Method findFallbackMethod(Class<?> targetClass, Method method, String fallbackName) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Class<?>[] withException = Arrays.copyOf(parameterTypes, parameterTypes.length + 1);
+        withException[parameterTypes.length] = DistributeLockException.class;
+        for (Class<?> clazz = targetClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Class<?>[] candidate : Arrays.asList(withException, parameterTypes)) {
+                try {
+                    Method fallback = clazz.getDeclaredMethod(fallbackName, candidate);
+                    if (!method.getReturnType().isAssignableFrom(fallback.getReturnType())
+                            && method.getReturnType() != void.class) {
+                        throw new IllegalStateException("降级方法返回值类型不匹配:" + fallback);
+                    }
+                    fallback.setAccessible(true);
+                    return fallback;
+                } catch (NoSuchMethodException ignored) {
+                }
+            }
+        }
+        throw new IllegalStateException("找不到降级方法:" + fallbackName + "，被注解方法为" + method);
+    }
+
     private String[] parseSpELLockKeys(String prefix, String[] lockKeys, String[] params, Object[] args) {
         if (StringUtils.isEmpty(params)) {
             return lockKeys;
@@ -150,6 +257,24 @@ public class DongDistributedLockAspect {
         return parseLockKeys.toArray(new String[0]);
     }
 
+    /**
+     * 按顺序解析每一层，每层只能解析出一个值，再以"/"连接为层级锁路径
+     */
+    private String parseHierarchicalPath(String prefix, String[] levels, String[] params, Object[] args) {
+        StringBuilder path = new StringBuilder(prefix);
+        for (int i = 0; i < levels.length; i++) {
+            String[] parsed = parseSpELLockKeys("", new String[]{levels[i]}, params, args);
+            if (parsed.length != 1) {
+                throw new IllegalArgumentException("层级锁的每一层只能解析出一个值:" + levels[i] + "，解析结果为" + Arrays.toString(parsed));
+            }
+            if (i > 0) {
+                path.append(DistributedHierarchicalLock.PATH_SEPARATOR);
+            }
+            path.append(parsed[0]);
+        }
+        return path.toString();
+    }
+
     /**
      * 数字转集合
      */
@@ -0,0 +1,319 @@
+package com.dongboy.cache;
+
+import com.dongboy.lock.LockMode;
+import com.dongboy.result.DistributedLockAcquireResult;
+import com.dongboy.service.DistributedLockCache;
+import com.dongboy.service.DistributedLockCacheOperation;
+import com.dongboy.util.LockUpdateThread;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * 请求合并装饰器
+ * 将并发的setIfAbsent/expire/delete在一个微小时间窗口内(或攒满指定数量后)合并为一次executeBatch提交给被装饰的缓存，
+ * 每个调用方拿到各自操作的结果
+ *
+ * @Author dongboy
+ * @what time    2026/10/19 11:20
+ */
+@Slf4j
+public class BatchingDistributedLockCache implements DistributedLockCache, AutoCloseable {
+
+    private static final long DEFAULT_WINDOW_MICROS = 200;
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 128;
+
+    private static final int DEFAULT_FLUSH_THREADS = 2;
+
+    // 调用方等待批次结果的最长时间
+    private static final long DEFAULT_MAX_WAIT_MILLS = 5000;
+
+    private final DistributedLockCache delegate;
+
+    private final long windowNanos;
+
+    private final int maxBatchSize;
+
+    private final long maxWaitMills;
+
+    private final BlockingQueue<PendingOperation> queue = new LinkedBlockingQueue<>();
+
+    private final List<Thread> flushThreads;
+
+    private volatile boolean closed;
+
+    public BatchingDistributedLockCache(DistributedLockCache delegate) {
+        this(delegate, DEFAULT_WINDOW_MICROS, DEFAULT_MAX_BATCH_SIZE, DEFAULT_FLUSH_THREADS);
+    }
+
+    /**
+     * @param windowMicros  第一个操作到达后最多等待的合并窗口
+     * @param maxBatchSize  单批最大操作数，攒满后立即提交
+     * @param flushThreads  提交线程数，即同时在途的批次数
+     */
+    public BatchingDistributedLockCache(DistributedLockCache delegate, long windowMicros, int maxBatchSize, int flushThreads) {
+        this(delegate, windowMicros, maxBatchSize, flushThreads, DEFAULT_MAX_WAIT_MILLS);
+    }
+
+    /**
+     * @param maxWaitMills 调用方等待批次结果的最长时间，超时抛出异常；超时后才成功的加锁会被自动释放
+     */
+    public BatchingDistributedLockCache(DistributedLockCache delegate, long windowMicros, int maxBatchSize, int flushThreads, long maxWaitMills) {
+        if (windowMicros < 0 || maxBatchSize < 1 || flushThreads < 1 || maxWaitMills <= 0) {
+            throw new IllegalArgumentException("window:" + windowMicros + ",batch size:" + maxBatchSize
+                    + ",flush threads:" + flushThreads + ",max wait:" + maxWaitMills);
+        }
+        this.delegate = delegate;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitMills = maxWaitMills;
+        this.flushThreads = new ArrayList<>(flushThreads);
+        for (int i = 0; i < flushThreads; i++) {
+            Thread thread = new LockUpdateThread(this::flushLoop);
+            thread.setName("lock-batch-flusher-" + i);
+            this.flushThreads.add(thread);
+            thread.start();
+        }
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+        return submit(DistributedLockCacheOperation.setIfAbsent(key, value, ttl, timeUnit));
+    }
+
+    /**
+     * 加锁合并提交，批量结果不带持有者和剩余过期时间；失败时不再单独查询，避免在竞争激烈的key上加倍后端交互，
+     * 本地负缓存按剩余时间未知处理
+     */
+    @Override
+    public DistributedLockAcquireResult trySetIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+        return DistributedLockAcquireResult.of(setIfAbsent(key, value, ttl, timeUnit));
+    }
+
+    @Override
+    public void expire(String key, long ttl, TimeUnit timeUnit) {
+        submit(DistributedLockCacheOperation.expire(key, ttl, timeUnit));
+    }
+
+    @Override
+    public void expireAll(Collection<String> keys, long ttl, TimeUnit timeUnit) {
+        // 本身已是批量操作，直接交给被装饰的缓存
+        delegate.expireAll(keys, ttl, timeUnit);
+    }
+
+    @Override
+    public void delete(String key, String value) {
+        submit(DistributedLockCacheOperation.delete(key, value));
+    }
+
+    @Override
+    public List<Boolean> executeBatch(List<DistributedLockCacheOperation> operations) {
+        return delegate.executeBatch(operations);
+    }
+
+    @Override
+    public boolean setModeIfCompatible(String key, String value, LockMode mode, long ttl, TimeUnit timeUnit) {
+        return delegate.setModeIfCompatible(key, value, mode, ttl, timeUnit);
+    }
+
+    @Override
+    public void expireMode(String key, String value, LockMode mode, long ttl, TimeUnit timeUnit) {
+        delegate.expireMode(key, value, mode, ttl, timeUnit);
+    }
+
+    @Override
+    public void deleteMode(String key, String value, LockMode mode) {
+        delegate.deleteMode(key, value, mode);
+    }
+
+    @Override
+    public void registerLockExpirationEvent(String key, Runnable eventCallback) {
+        delegate.registerLockExpirationEvent(key, eventCallback);
+    }
+
+    @Override
+    public void unregisterLockExpirationEvent(String key) {
+        delegate.unregisterLockExpirationEvent(key);
+    }
+
+    @Override
+    public void subscribeLockRelease(Consumer<String> listener) {
+        delegate.subscribeLockRelease(listener);
+    }
+
+    @Override
+    public boolean publish(String channel, String message) {
+        return delegate.publish(channel, message);
+    }
+
+    @Override
+    public boolean subscribe(String channel, Consumer<String> listener) {
+        return delegate.subscribe(channel, listener);
+    }
+
+    private boolean submit(DistributedLockCacheOperation operation) {
+        if (closed) {
+            throw new IllegalStateException("batching lock cache closed");
+        }
+        PendingOperation pending = new PendingOperation(operation);
+        queue.add(pending);
+        if (closed) {
+            // 与close()并发：close的清理可能已经结束，自行清理，保证队列中的操作都有结果
+            failPending(new IllegalStateException("batching lock cache closed"));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMills);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return pending.result.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    // 操作已入队，在等待上限内继续等到结果，否则可能丢失已获得的锁
+                    interrupted = true;
+                } catch (TimeoutException e) {
+                    releaseIfAcquiredLater(pending);
+                    throw new IllegalStateException("batched lock operation timed out after " + maxWaitMills + "ms:" + operation.getKey());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 调用方已放弃等待，之后才加锁成功的操作没有人持有，立即释放
+     */
+    private void releaseIfAcquiredLater(PendingOperation pending) {
+        DistributedLockCacheOperation operation = pending.operation;
+        if (operation.getType() != DistributedLockCacheOperation.Type.SET_IF_ABSENT) {
+            return;
+        }
+        pending.result.thenAccept(acquired -> {
+            if (Boolean.TRUE.equals(acquired)) {
+                delegate.delete(operation.getKey(), operation.getValue());
+            }
+        });
+    }
+
+    private void flushLoop() {
+        List<PendingOperation> batch = new ArrayList<>(maxBatchSize);
+        while (!closed) {
+            try {
+                PendingOperation first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    // 先取走已经排队的操作，再在窗口剩余时间内等待新操作
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remain = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remain <= 0) {
+                        break;
+                    }
+                    PendingOperation next = queue.poll(remain, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (RuntimeException e) {
+                // 提交线程不能因单个批次出错而退出，否则之后的操作都只能等到超时
+                log.error("flush lock operation batch failed, size:" + batch.size(), e);
+                batch.forEach(pending -> pending.result.completeExceptionally(e));
+            } catch (InterruptedException e) {
+                // 已从队列取出但还未提交的操作不会再被提交
+                IllegalStateException closedException = new IllegalStateException("batching lock cache closed");
+                batch.forEach(pending -> pending.result.completeExceptionally(closedException));
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        failPending(new IllegalStateException("batching lock cache closed"));
+    }
+
+    private void flush(List<PendingOperation> batch) {
+        List<DistributedLockCacheOperation> operations = new ArrayList<>(batch.size());
+        for (PendingOperation pending : batch) {
+            operations.add(pending.operation);
+        }
+        List<Boolean> results;
+        try {
+            results = delegate.executeBatch(operations);
+        } catch (Throwable e) {
+            log.error("execute lock operation batch failed, size:" + batch.size(), e);
+            for (PendingOperation pending : batch) {
+                pending.result.completeExceptionally(e);
+            }
+            return;
+        }
+        if (results == null || results.size() != batch.size()) {
+            IllegalStateException e = new IllegalStateException("batch results size mismatch, expected:" + batch.size()
+                    + ", actual:" + (results == null ? null : results.size()));
+            log.error("execute lock operation batch failed", e);
+            for (PendingOperation pending : batch) {
+                pending.result.completeExceptionally(e);
+            }
+            // 无法确定哪些加锁成功，调用方已得到失败，尽力释放
+            batch.stream().map(pending -> pending.operation)
+                    .filter(operation -> operation.getType() == DistributedLockCacheOperation.Type.SET_IF_ABSENT)
+                    .forEach(operation -> delegate.delete(operation.getKey(), operation.getValue()));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result.complete(results.get(i));
+        }
+    }
+
+    private void failPending(Throwable cause) {
+        PendingOperation pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        flushThreads.forEach(Thread::interrupt);
+        failPending(new IllegalStateException("batching lock cache closed"));
+    }
+
+    private static class PendingOperation {
+
+        private final DistributedLockCacheOperation operation;
+
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private PendingOperation(DistributedLockCacheOperation operation) {
+            this.operation = operation;
+        }
+
+    }
+
+}
@@ -0,0 +1,591 @@
+package com.dongboy.cache;
+
+import com.dongboy.lock.LockMode;
+import com.dongboy.result.DistributedLockAcquireResult;
+import com.dongboy.service.DistributedLockCache;
+import com.dongboy.service.DistributedLockCacheOperation;
+import com.dongboy.util.LockUpdateThread;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于关系型数据库租约表的分布式锁缓存
+ * 表结构: lock_key(主键) / lock_value(持有者) / expire_at(过期时间戳，毫秒)
+ * 层级锁的登记存放在 表名_mode 中: lock_key / lock_value / lock_mode / expire_at，主键为前三列
+ * 过期时间使用本机时钟计算，各节点需保持时钟同步
+ *
+ * @Author dongboy
+ * @what time    2026/10/19 10:12
+ */
+@Slf4j
+public class JdbcDistributedLockCache implements DistributedLockCache, AutoCloseable {
+
+    public static final String DEFAULT_TABLE_NAME = "dong_distributed_lock";
+
+    // 过期租约清理周期
+    private static final long DEFAULT_SWEEP_INTERVAL_MILLS = 1000;
+
+    // 单次JDBC批量提交中的最大语句数
+    private static final int MAX_BATCH_SIZE = 500;
+
+    // 层级锁登记表中每个key的互斥行，lock_value和lock_mode都为该值；兼容性检查前先更新该行以串行化同一key上的登记
+    private static final String MODE_LATCH = "#";
+
+    // 互斥行最近一次使用后的保留时长，之后被清理
+    private static final long MODE_LATCH_RETENTION_MILLS = 60000;
+
+    private final DataSource dataSource;
+
+    @Getter
+    private final String tableName;
+
+    private final String insertSql;
+
+    private final String takeOverSql;
+
+    private final String selectSql;
+
+    private final String expireSql;
+
+    private final String deleteSql;
+
+    private final String sweepSql;
+
+    @Getter
+    private final String modeTableName;
+
+    private final String modeLatchSql;
+
+    private final String modeLatchInsertSql;
+
+    private final String modeSelectSql;
+
+    private final String modeInsertSql;
+
+    private final String modeRenewSql;
+
+    private final String modeDeleteSql;
+
+    private final String modeSweepSql;
+
+    // 注册了过期事件的锁，key -> 过期回调
+    private final Map<String, Runnable> expirationEvents = new ConcurrentHashMap<>();
+
+    // 本节点加锁成功的租约(持有者和过期时间)，续期时按持有者校验，并用于触发过期事件，避免逐个查询数据库
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService sweeper;
+
+    public JdbcDistributedLockCache(DataSource dataSource) {
+        this(dataSource, DEFAULT_TABLE_NAME, DEFAULT_SWEEP_INTERVAL_MILLS);
+    }
+
+    public JdbcDistributedLockCache(DataSource dataSource, String tableName, long sweepIntervalMills) {
+        if (sweepIntervalMills <= 0) {
+            throw new IllegalArgumentException("sweep interval:" + sweepIntervalMills);
+        }
+        this.dataSource = dataSource;
+        this.tableName = tableName;
+        this.insertSql = "INSERT INTO " + tableName + " (lock_key, lock_value, expire_at) VALUES (?, ?, ?)";
+        // 仅当租约已过期时才能被抢占
+        this.takeOverSql = "UPDATE " + tableName + " SET lock_value = ?, expire_at = ? WHERE lock_key = ? AND expire_at < ?";
+        this.selectSql = "SELECT lock_value, expire_at FROM " + tableName + " WHERE lock_key = ?";
+        // 只续期仍由本节点持有且未过期的租约，不会延长已被他人抢占的锁
+        this.expireSql = "UPDATE " + tableName + " SET expire_at = ? WHERE lock_key = ? AND lock_value = ? AND expire_at >= ?";
+        this.deleteSql = "DELETE FROM " + tableName + " WHERE lock_key = ? AND lock_value = ?";
+        this.sweepSql = "DELETE FROM " + tableName + " WHERE expire_at < ?";
+        this.modeTableName = tableName + "_mode";
+        this.modeLatchSql = "UPDATE " + modeTableName + " SET expire_at = ? WHERE lock_key = ? AND lock_value = '" + MODE_LATCH + "' AND lock_mode = '" + MODE_LATCH + "'";
+        this.modeLatchInsertSql = "INSERT INTO " + modeTableName + " (lock_key, lock_value, lock_mode, expire_at) VALUES (?, '" + MODE_LATCH + "', '" + MODE_LATCH + "', ?)";
+        this.modeSelectSql = "SELECT lock_value, lock_mode FROM " + modeTableName + " WHERE lock_key = ? AND lock_mode <> '" + MODE_LATCH + "' AND expire_at >= ?";
+        this.modeInsertSql = "INSERT INTO " + modeTableName + " (lock_key, lock_value, lock_mode, expire_at) VALUES (?, ?, ?, ?)";
+        this.modeRenewSql = "UPDATE " + modeTableName + " SET expire_at = ? WHERE lock_key = ? AND lock_value = ? AND lock_mode = ? AND expire_at >= ?";
+        this.modeDeleteSql = "DELETE FROM " + modeTableName + " WHERE lock_key = ? AND lock_value = ? AND lock_mode = ?";
+        this.modeSweepSql = "DELETE FROM " + modeTableName + " WHERE expire_at < ?";
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(LockUpdateThread::new);
+        this.sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (Exception e) {
+                log.error("sweep expired locks failed", e);
+            }
+        }, sweepIntervalMills, sweepIntervalMills, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 租约表和层级锁登记表不存在时创建
+     */
+    public void initTable() {
+        String ddl = "CREATE TABLE IF NOT EXISTS " + tableName + " ("
+                + "lock_key VARCHAR(255) NOT NULL PRIMARY KEY, "
+                + "lock_value VARCHAR(255) NOT NULL, "
+                + "expire_at BIGINT NOT NULL)";
+        String modeDdl = "CREATE TABLE IF NOT EXISTS " + modeTableName + " ("
+                + "lock_key VARCHAR(255) NOT NULL, "
+                + "lock_value VARCHAR(255) NOT NULL, "
+                + "lock_mode VARCHAR(2) NOT NULL, "
+                + "expire_at BIGINT NOT NULL, "
+                + "PRIMARY KEY (lock_key, lock_value, lock_mode))";
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(ddl);
+            statement.execute(modeDdl);
+        } catch (SQLException e) {
+            throw new IllegalStateException("create lock table failed:" + tableName, e);
+        }
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+        long now = System.currentTimeMillis();
+        long expireAt = now + timeUnit.toMillis(ttl);
+        try (Connection connection = dataSource.getConnection()) {
+            boolean acquired = insert(connection, key, value, expireAt) || takeOver(connection, key, value, expireAt, now);
+            if (acquired) {
+                leases.put(key, new Lease(value, expireAt));
+            }
+            return acquired;
+        } catch (SQLException e) {
+            throw new IllegalStateException("acquire lock failed:" + key, e);
+        }
+    }
+
+    /**
+     * 加锁失败时再查询一次当前持有者和过期时间，供调用方在本地缓存竞争状态
+     */
+    @Override
+    public DistributedLockAcquireResult trySetIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+        long now = System.currentTimeMillis();
+        long expireAt = now + timeUnit.toMillis(ttl);
+        try (Connection connection = dataSource.getConnection()) {
+            if (insert(connection, key, value, expireAt) || takeOver(connection, key, value, expireAt, now)) {
+                leases.put(key, new Lease(value, expireAt));
+                return DistributedLockAcquireResult.of(true);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(selectSql)) {
+                statement.setString(1, key);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        long remain = resultSet.getLong(2) - System.currentTimeMillis();
+                        return new DistributedLockAcquireResult(false, resultSet.getString(1), Math.max(remain, 0));
+                    }
+                    return new DistributedLockAcquireResult(false, null, 0);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("acquire lock failed:" + key, e);
+        }
+    }
+
+    private boolean insert(Connection connection, String key, String value, long expireAt) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+            statement.setString(1, key);
+            statement.setString(2, value);
+            statement.setLong(3, expireAt);
+            return statement.executeUpdate() == 1;
+        } catch (SQLException e) {
+            if (isDuplicateKey(e)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private boolean takeOver(Connection connection, String key, String value, long expireAt, long now) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(takeOverSql)) {
+            statement.setString(1, value);
+            statement.setLong(2, expireAt);
+            statement.setString(3, key);
+            statement.setLong(4, now);
+            return statement.executeUpdate() == 1;
+        }
+    }
+
+    private boolean isDuplicateKey(SQLException e) {
+        // SQL标准中 23 类状态码表示完整性约束冲突
+        return e.getSQLState() != null && e.getSQLState().startsWith("23");
+    }
+
+    @Override
+    public void expire(String key, long ttl, TimeUnit timeUnit) {
+        expireAll(Collections.singletonList(key), ttl, timeUnit);
+    }
+
+    /**
+     * 逐个key按本节点记录的持有者续期，多条UPDATE作为一次JDBC批量提交；本节点没有租约记录的key不续期
+     */
+    @Override
+    public void expireAll(Collection<String> keys, long ttl, TimeUnit timeUnit) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expireAt = now + timeUnit.toMillis(ttl);
+        List<String> keyList = new ArrayList<>(keys.size());
+        List<String> values = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            Lease lease = leases.get(key);
+            if (lease == null) {
+                log.debug("no local lease to renew:" + key);
+                continue;
+            }
+            keyList.add(key);
+            values.add(lease.value);
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(expireSql)) {
+            for (int from = 0; from < keyList.size(); from += MAX_BATCH_SIZE) {
+                int to = Math.min(from + MAX_BATCH_SIZE, keyList.size());
+                for (int i = from; i < to; i++) {
+                    addExpire(statement, keyList.get(i), values.get(i), expireAt, now);
+                }
+                int[] counts = statement.executeBatch();
+                for (int i = from; i < to; i++) {
+                    onRenewed(keyList.get(i), values.get(i), expireAt, counts[i - from]);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("update lock expiration failed:" + keys, e);
+        }
+    }
+
+    private void addExpire(PreparedStatement statement, String key, String value, long expireAt, long now) throws SQLException {
+        statement.setLong(1, expireAt);
+        statement.setString(2, key);
+        statement.setString(3, value);
+        statement.setLong(4, now);
+        statement.addBatch();
+    }
+
+    /**
+     * 只有确实续期成功的租约才推迟本地记录的过期时间，否则租约到期后照常触发过期事件
+     */
+    private boolean onRenewed(String key, String value, long expireAt, int count) {
+        boolean renewed = count > 0 || count == Statement.SUCCESS_NO_INFO;
+        if (renewed) {
+            leases.computeIfPresent(key, (k, lease) -> lease.value.equals(value) ? new Lease(value, expireAt) : lease);
+        } else {
+            log.debug("lease not renewed, lost or expired:" + key);
+        }
+        return renewed;
+    }
+
+    @Override
+    public void delete(String key, String value) {
+        leases.computeIfPresent(key, (k, lease) -> lease.value.equals(value) ? null : lease);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(deleteSql)) {
+            statement.setString(1, key);
+            statement.setString(2, value);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("release lock failed:" + key, e);
+        }
+    }
+
+    /**
+     * 整批操作共用一个连接，连续的续期、释放操作合并为JDBC批量提交(每次至多MAX_BATCH_SIZE条)，操作顺序保持不变
+     * EXPIRE按本节点记录的持有者续期，返回是否续期成功
+     * 单个操作或单次批量提交出错时只把涉及的操作记为失败，已成功的加锁照常返回true，不会因整批失败而泄漏
+     */
+    @Override
+    public List<Boolean> executeBatch(List<DistributedLockCacheOperation> operations) {
+        List<Boolean> results = new ArrayList<>(Collections.nCopies(operations.size(), Boolean.FALSE));
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement pending = null;
+            DistributedLockCacheOperation.Type pendingType = null;
+            // 已加入当前JDBC批量的操作下标及续期后的过期时间
+            List<Integer> pendingIndexes = new ArrayList<>();
+            List<Long> pendingExpireAts = new ArrayList<>();
+            try {
+                for (int index = 0; index < operations.size(); index++) {
+                    DistributedLockCacheOperation operation = operations.get(index);
+                    if (pending != null && pendingType != operation.getType()) {
+                        flush(pending, pendingType, pendingIndexes, pendingExpireAts, operations, results);
+                        pending.close();
+                        pending = null;
+                    }
+                    pendingType = operation.getType();
+                    long now = System.currentTimeMillis();
+                    long expireAt = now + operation.getTimeUnit().toMillis(operation.getTtl());
+                    switch (operation.getType()) {
+                        case SET_IF_ABSENT:
+                            results.set(index, acquireInBatch(connection, operation, expireAt, now));
+                            break;
+                        case EXPIRE:
+                            Lease lease = leases.get(operation.getKey());
+                            if (lease == null) {
+                                break;
+                            }
+                            if (pending == null) {
+                                pending = connection.prepareStatement(expireSql);
+                            }
+                            addExpire(pending, operation.getKey(), lease.value, expireAt, now);
+                            pendingIndexes.add(index);
+                            pendingExpireAts.add(expireAt);
+                            flushIfFull(pending, pendingType, pendingIndexes, pendingExpireAts, operations, results);
+                            break;
+                        case DELETE:
+                            if (pending == null) {
+                                pending = connection.prepareStatement(deleteSql);
+                            }
+                            pending.setString(1, operation.getKey());
+                            pending.setString(2, operation.getValue());
+                            pending.addBatch();
+                            pendingIndexes.add(index);
+                            pendingExpireAts.add(expireAt);
+                            flushIfFull(pending, pendingType, pendingIndexes, pendingExpireAts, operations, results);
+                            break;
+                        default:
+                            throw new UnsupportedOperationException("operation type:" + operation.getType());
+                    }
+                }
+                if (pending != null) {
+                    flush(pending, pendingType, pendingIndexes, pendingExpireAts, operations, results);
+                }
+            } finally {
+                if (pending != null) {
+                    pending.close();
+                }
+            }
+        } catch (SQLException e) {
+            // 连接或语句不可用，之后的操作都未执行，已得到的结果照常返回
+            log.error("execute lock operations failed, results so far:" + results, e);
+        }
+        return results;
+    }
+
+    private boolean acquireInBatch(Connection connection, DistributedLockCacheOperation operation, long expireAt, long now) {
+        try {
+            boolean acquired = insert(connection, operation.getKey(), operation.getValue(), expireAt)
+                    || takeOver(connection, operation.getKey(), operation.getValue(), expireAt, now);
+            if (acquired) {
+                leases.put(operation.getKey(), new Lease(operation.getValue(), expireAt));
+            }
+            return acquired;
+        } catch (SQLException e) {
+            log.error("acquire lock in batch failed:" + operation.getKey(), e);
+            return false;
+        }
+    }
+
+    private void flushIfFull(PreparedStatement pending, DistributedLockCacheOperation.Type type, List<Integer> indexes, List<Long> expireAts,
+                             List<DistributedLockCacheOperation> operations, List<Boolean> results) {
+        if (indexes.size() >= MAX_BATCH_SIZE) {
+            flush(pending, type, indexes, expireAts, operations, results);
+        }
+    }
+
+    private void flush(PreparedStatement pending, DistributedLockCacheOperation.Type type, List<Integer> indexes, List<Long> expireAts,
+                       List<DistributedLockCacheOperation> operations, List<Boolean> results) {
+        int[] counts;
+        try {
+            counts = pending.executeBatch();
+        } catch (BatchUpdateException e) {
+            log.error("execute " + type + " batch failed, size:" + indexes.size(), e);
+            counts = e.getUpdateCounts() == null ? new int[0] : e.getUpdateCounts();
+        } catch (SQLException e) {
+            log.error("execute " + type + " batch failed, size:" + indexes.size(), e);
+            counts = new int[0];
+        }
+        for (int i = 0; i < indexes.size(); i++) {
+            int index = indexes.get(i);
+            DistributedLockCacheOperation operation = operations.get(index);
+            if (i >= counts.length || counts[i] == Statement.EXECUTE_FAILED) {
+                results.set(index, false);
+            } else if (type == DistributedLockCacheOperation.Type.EXPIRE) {
+                Lease lease = leases.get(operation.getKey());
+                results.set(index, lease != null && onRenewed(operation.getKey(), lease.value, expireAts.get(i), counts[i]));
+            } else {
+                leases.computeIfPresent(operation.getKey(), (k, lease) -> lease.value.equals(operation.getValue()) ? null : lease);
+                results.set(index, true);
+            }
+        }
+        indexes.clear();
+        expireAts.clear();
+    }
+
+    /**
+     * 在一个事务中：锁住该key的互斥行，检查其他持有者未过期的登记是否都兼容，再插入或续期自己的登记
+     */
+    @Override
+    public boolean setModeIfCompatible(String key, String value, LockMode mode, long ttl, TimeUnit timeUnit) {
+        long now = System.currentTimeMillis();
+        long expireAt = now + timeUnit.toMillis(ttl);
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                lockModeLatch(connection, key, now);
+                boolean compatible = true;
+                try (PreparedStatement statement = connection.prepareStatement(modeSelectSql)) {
+                    statement.setString(1, key);
+                    statement.setLong(2, now);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (compatible && resultSet.next()) {
+                            compatible = resultSet.getString(1).equals(value)
+                                    || mode.isCompatibleWith(LockMode.valueOf(resultSet.getString(2)));
+                        }
+                    }
+                }
+                if (compatible && renewMode(connection, key, value, mode, expireAt, now) == 0) {
+                    deleteMode(connection, key, value, mode);
+                    try (PreparedStatement statement = connection.prepareStatement(modeInsertSql)) {
+                        statement.setString(1, key);
+                        statement.setString(2, value);
+                        statement.setString(3, mode.name());
+                        statement.setLong(4, expireAt);
+                        statement.executeUpdate();
+                    }
+                }
+                connection.commit();
+                return compatible;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("acquire hierarchical lock failed:" + key + "@" + mode, e);
+        }
+    }
+
+    private void lockModeLatch(Connection connection, String key, long now) throws SQLException {
+        long retainUntil = now + MODE_LATCH_RETENTION_MILLS;
+        while (true) {
+            try (PreparedStatement statement = connection.prepareStatement(modeLatchSql)) {
+                statement.setLong(1, retainUntil);
+                statement.setString(2, key);
+                if (statement.executeUpdate() == 1) {
+                    return;
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement(modeLatchInsertSql)) {
+                statement.setString(1, key);
+                statement.setLong(2, retainUntil);
+                statement.executeUpdate();
+                return;
+            } catch (SQLException e) {
+                // 并发插入了互斥行，重新锁定
+                if (!isDuplicateKey(e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private int renewMode(Connection connection, String key, String value, LockMode mode, long expireAt, long now) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(modeRenewSql)) {
+            statement.setLong(1, expireAt);
+            statement.setString(2, key);
+            statement.setString(3, value);
+            statement.setString(4, mode.name());
+            statement.setLong(5, now);
+            return statement.executeUpdate();
+        }
+    }
+
+    private void deleteMode(Connection connection, String key, String value, LockMode mode) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(modeDeleteSql)) {
+            statement.setString(1, key);
+            statement.setString(2, value);
+            statement.setString(3, mode.name());
+            statement.executeUpdate();
+        }
+    }
+
+    @Override
+    public void expireMode(String key, String value, LockMode mode, long ttl, TimeUnit timeUnit) {
+        long now = System.currentTimeMillis();
+        try (Connection connection = dataSource.getConnection()) {
+            renewMode(connection, key, value, mode, now + timeUnit.toMillis(ttl), now);
+        } catch (SQLException e) {
+            throw new IllegalStateException("update hierarchical lock expiration failed:" + key + "@" + mode, e);
+        }
+    }
+
+    @Override
+    public void deleteMode(String key, String value, LockMode mode) {
+        try (Connection connection = dataSource.getConnection()) {
+            deleteMode(connection, key, value, mode);
+        } catch (SQLException e) {
+            throw new IllegalStateException("release hierarchical lock failed:" + key + "@" + mode, e);
+        }
+    }
+
+    @Override
+    public void registerLockExpirationEvent(String key, Runnable eventCallback) {
+        expirationEvents.put(key, eventCallback);
+    }
+
+    @Override
+    public void unregisterLockExpirationEvent(String key) {
+        expirationEvents.remove(key);
+    }
+
+    /**
+     * 后台清理：触发本节点已到期租约的过期事件，丢弃未注册过期事件的到期租约记录(到期租约已不能续期)，
+     * 并用一条语句删除表中所有过期租约
+     */
+    protected void sweep() throws SQLException {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Runnable> entry : expirationEvents.entrySet()) {
+            Lease lease = leases.get(entry.getKey());
+            if (lease != null && lease.expireAt < now && expirationEvents.remove(entry.getKey(), entry.getValue())) {
+                leases.remove(entry.getKey(), lease);
+                entry.getValue().run();
+            }
+        }
+        leases.entrySet().removeIf(entry -> entry.getValue().expireAt < now && !expirationEvents.containsKey(entry.getKey()));
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sweepSql)) {
+            statement.setLong(1, now);
+            int swept = statement.executeUpdate();
+            if (swept > 0) {
+                log.debug("swept " + swept + " expired locks from " + tableName);
+            }
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(modeSweepSql)) {
+            statement.setLong(1, now);
+            statement.executeUpdate();
+        }
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    private static final class Lease {
+
+        private final String value;
+
+        private final long expireAt;
+
+        private Lease(String value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,457 @@
+package com.dongboy.cache;
+
+import com.dongboy.lock.LockMode;
+import com.dongboy.result.DistributedLockAcquireResult;
+import com.dongboy.service.DistributedLockCache;
+import com.dongboy.service.DistributedLockCacheOperation;
+import com.dongboy.util.LockUpdateThread;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 多数派(Redlock风格)分布式锁缓存
+ * 同一个key在N个相互独立的缓存上并行加锁，在有效期窗口内得到多数派成功才算加锁成功，失败时释放所有节点上的锁
+ * 所有操作并行下发，多数派响应后立即返回，耗时约等于各节点RTT的中位数而不是总和
+ *
+ * @Author dongboy
+ * @what time    2026/10/19 14:30
+ */
+@Slf4j
+public class QuorumDistributedLockCache implements DistributedLockCache, AutoCloseable {
+
+    // 单次操作等待多数派响应的最长时间
+    private static final long DEFAULT_OPERATION_TIMEOUT_MILLS = 200;
+
+    // 时钟漂移系数，有效期需扣除 ttl * CLOCK_DRIFT_FACTOR
+    private static final double CLOCK_DRIFT_FACTOR = 0.01;
+
+    // 每个节点可同时进行的操作数，超出的操作排队，队列满时由调用线程自己执行
+    private static final int DEFAULT_THREADS_PER_NODE = 16;
+
+    private static final int QUEUE_CAPACITY_PER_THREAD = 64;
+
+    private final List<DistributedLockCache> nodes;
+
+    @Getter
+    private final int quorum;
+
+    private final long operationTimeoutMills;
+
+    private final ExecutorService executorService;
+
+    // 每记录这么多次授予清理一次已过期的记录
+    private static final int GRANT_PURGE_INTERVAL = 1024;
+
+    // 本实例持有的key -> 加锁时授予了租约的节点及租约过期时间，只有这些节点上的租约过期会触发过期事件
+    private final Map<String, Grant> grantedNodes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger grantsSincePurge = new AtomicInteger();
+
+    public QuorumDistributedLockCache(List<DistributedLockCache> nodes) {
+        this(nodes, DEFAULT_OPERATION_TIMEOUT_MILLS);
+    }
+
+    public QuorumDistributedLockCache(List<DistributedLockCache> nodes, long operationTimeoutMills) {
+        this(nodes, operationTimeoutMills, nodes == null ? 0 : nodes.size() * DEFAULT_THREADS_PER_NODE);
+    }
+
+    /**
+     * @param maxThreads 并行下发操作的线程数上限
+     */
+    public QuorumDistributedLockCache(List<DistributedLockCache> nodes, long operationTimeoutMills, int maxThreads) {
+        if (nodes == null || nodes.isEmpty()) {
+            throw new IllegalArgumentException("Lock cache nodes are empty!");
+        }
+        if (operationTimeoutMills <= 0 || maxThreads < 1) {
+            throw new IllegalArgumentException("operation timeout:" + operationTimeoutMills + ",max threads:" + maxThreads);
+        }
+        this.nodes = new ArrayList<>(nodes);
+        this.quorum = nodes.size() / 2 + 1;
+        this.operationTimeoutMills = operationTimeoutMills;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(maxThreads * QUEUE_CAPACITY_PER_THREAD), LockUpdateThread::new,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        this.executorService = executor;
+    }
+
+    private static class Grant {
+
+        // 注册过期事件时才求值，多数派达成后、注册前才响应的节点也计入授予
+        private final Supplier<List<DistributedLockCache>> nodes;
+
+        private volatile long expireAtMills;
+
+        private Grant(Supplier<List<DistributedLockCache>> nodes, long expireAtMills) {
+            this.nodes = nodes;
+            this.expireAtMills = expireAtMills;
+        }
+
+    }
+
+    /**
+     * 记录授予了租约的节点；未经delete而自然过期的记录每隔一定次数的授予清理一次，摊还为常数开销
+     */
+    private void recordGrant(String key, Supplier<List<DistributedLockCache>> granted, long expireAtMills) {
+        grantedNodes.put(key, new Grant(granted, expireAtMills));
+        if (grantsSincePurge.incrementAndGet() >= GRANT_PURGE_INTERVAL) {
+            grantsSincePurge.set(0);
+            long now = System.currentTimeMillis();
+            grantedNodes.values().removeIf(grant -> grant.expireAtMills <= now);
+        }
+    }
+
+    private void onRenewed(String key, long ttl, TimeUnit timeUnit) {
+        Grant grant = grantedNodes.get(key);
+        if (grant != null) {
+            grant.expireAtMills = System.currentTimeMillis() + timeUnit.toMillis(ttl);
+        }
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+        long ttlMills = timeUnit.toMillis(ttl);
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<Boolean>> futures = fanOut(node -> node.setIfAbsent(key, value, ttl, timeUnit));
+        boolean locked = awaitQuorum(futures, Math.min(operationTimeoutMills, ttlMills), Boolean.TRUE::equals)
+                && isValid(start, ttlMills);
+        if (locked) {
+            recordGrant(key, () -> granted(futures, Boolean.TRUE::equals), start + ttlMills);
+        } else {
+            // 包括尚未响应的节点在内全部释放，delete按持有者校验，不会误删他人的锁
+            fanOut(node -> {
+                node.delete(key, value);
+                return true;
+            });
+        }
+        return locked;
+    }
+
+    /**
+     * 与setIfAbsent相同；失败时带回加锁失败的节点中出现最多的持有者，剩余过期时间取其中最短的一个，
+     * 这些节点中最早可能释放的时刻之前重试一定仍会失败
+     */
+    @Override
+    public DistributedLockAcquireResult trySetIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+        long ttlMills = timeUnit.toMillis(ttl);
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<DistributedLockAcquireResult>> futures =
+                fanOut(node -> node.trySetIfAbsent(key, value, ttl, timeUnit));
+        boolean locked = awaitQuorum(futures, Math.min(operationTimeoutMills, ttlMills), DistributedLockAcquireResult::isAcquired)
+                && isValid(start, ttlMills);
+        if (locked) {
+            recordGrant(key, () -> granted(futures, DistributedLockAcquireResult::isAcquired), start + ttlMills);
+            return DistributedLockAcquireResult.of(true);
+        }
+        fanOut(node -> {
+            node.delete(key, value);
+            return true;
+        });
+        Map<String, Integer> ownerCounts = new HashMap<>();
+        long remainingTtlMills = -1;
+        for (CompletableFuture<DistributedLockAcquireResult> future : futures) {
+            DistributedLockAcquireResult result = completedResult(future);
+            if (result == null || result.isAcquired()) {
+                continue;
+            }
+            if (result.getOwner() != null) {
+                ownerCounts.merge(result.getOwner(), 1, Integer::sum);
+            }
+            if (result.getRemainingTtlMills() >= 0
+                    && (remainingTtlMills < 0 || result.getRemainingTtlMills() < remainingTtlMills)) {
+                remainingTtlMills = result.getRemainingTtlMills();
+            }
+        }
+        String owner = ownerCounts.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(null);
+        return new DistributedLockAcquireResult(false, owner, remainingTtlMills);
+    }
+
+    private static <T> T completedResult(CompletableFuture<T> future) {
+        return future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    /**
+     * 未凑齐多数派时回滚全部节点，已响应节点报告被占用的key都视为被其他持有者占用
+     */
+    @Override
+    public List<String> trySetAllIfAbsent(List<String> keys, String value, long ttl, TimeUnit timeUnit) {
+        long ttlMills = timeUnit.toMillis(ttl);
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<List<String>>> futures = fanOut(node -> node.trySetAllIfAbsent(keys, value, ttl, timeUnit));
+        boolean locked = awaitQuorum(futures, Math.min(operationTimeoutMills, ttlMills), List::isEmpty)
+                && isValid(start, ttlMills);
+        if (locked) {
+            Supplier<List<DistributedLockCache>> granted = () -> granted(futures, List::isEmpty);
+            keys.forEach(key -> recordGrant(key, granted, start + ttlMills));
+            return Collections.emptyList();
+        }
+        List<DistributedLockCacheOperation> rollback = new ArrayList<>(keys.size());
+        keys.forEach(key -> rollback.add(DistributedLockCacheOperation.delete(key, value)));
+        fanOut(node -> {
+            node.executeBatch(rollback);
+            return true;
+        });
+        Set<String> conflicts = new LinkedHashSet<>();
+        for (CompletableFuture<List<String>> future : futures) {
+            List<String> result = completedResult(future);
+            if (result != null) {
+                conflicts.addAll(result);
+            }
+        }
+        return new ArrayList<>(conflicts);
+    }
+
+    /**
+     * 已响应且授予了租约的节点；求值时仍未响应的节点按未授予处理，过期事件只会更早触发
+     */
+    private <T> List<DistributedLockCache> granted(List<CompletableFuture<T>> futures, Predicate<T> succeeded) {
+        List<DistributedLockCache> granted = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            T result = completedResult(futures.get(i));
+            if (result != null && succeeded.test(result)) {
+                granted.add(nodes.get(i));
+            }
+        }
+        return granted;
+    }
+
+    private boolean isValid(long start, long ttlMills) {
+        long validity = ttlMills - (System.currentTimeMillis() - start) - (long) (ttlMills * CLOCK_DRIFT_FACTOR);
+        return validity > 0;
+    }
+
+    @Override
+    public void expire(String key, long ttl, TimeUnit timeUnit) {
+        awaitAck(fanOut(node -> {
+            node.expire(key, ttl, timeUnit);
+            return true;
+        }), "expire", key);
+        onRenewed(key, ttl, timeUnit);
+    }
+
+    @Override
+    public void expireAll(Collection<String> keys, long ttl, TimeUnit timeUnit) {
+        awaitAck(fanOut(node -> {
+            node.expireAll(keys, ttl, timeUnit);
+            return true;
+        }), "expire", keys);
+        keys.forEach(key -> onRenewed(key, ttl, timeUnit));
+    }
+
+    @Override
+    public void delete(String key, String value) {
+        grantedNodes.remove(key);
+        awaitAck(fanOut(node -> {
+            node.delete(key, value);
+            return true;
+        }), "delete", key);
+    }
+
+    @Override
+    public boolean setModeIfCompatible(String key, String value, LockMode mode, long ttl, TimeUnit timeUnit) {
+        long ttlMills = timeUnit.toMillis(ttl);
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<Boolean>> futures = fanOut(node -> node.setModeIfCompatible(key, value, mode, ttl, timeUnit));
+        boolean locked = awaitQuorum(futures, Math.min(operationTimeoutMills, ttlMills), Boolean.TRUE::equals)
+                && isValid(start, ttlMills);
+        if (!locked) {
+            fanOut(node -> {
+                node.deleteMode(key, value, mode);
+                return true;
+            });
+        }
+        return locked;
+    }
+
+    @Override
+    public void expireMode(String key, String value, LockMode mode, long ttl, TimeUnit timeUnit) {
+        awaitAck(fanOut(node -> {
+            node.expireMode(key, value, mode, ttl, timeUnit);
+            return true;
+        }), "expire", key);
+    }
+
+    @Override
+    public void deleteMode(String key, String value, LockMode mode) {
+        awaitAck(fanOut(node -> {
+            node.deleteMode(key, value, mode);
+            return true;
+        }), "delete", key);
+    }
+
+    /**
+     * 整批操作并行下发到每个节点；SET_IF_ABSENT在多数派成功且仍在有效期内时才算成功，失败的会在所有节点上回滚
+     */
+    @Override
+    public List<Boolean> executeBatch(List<DistributedLockCacheOperation> operations) {
+        long start = System.currentTimeMillis();
+        long deadline = start + operationTimeoutMills;
+        List<CompletableFuture<List<Boolean>>> futures = fanOut(node -> node.executeBatch(operations));
+        List<Boolean> results = new ArrayList<>(operations.size());
+        List<DistributedLockCacheOperation> rollback = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            DistributedLockCacheOperation operation = operations.get(i);
+            int index = i;
+            List<CompletableFuture<Boolean>> opFutures = new ArrayList<>(futures.size());
+            futures.forEach(future -> opFutures.add(future.thenApply(nodeResults -> nodeResults.get(index))));
+            boolean success = awaitQuorum(opFutures, deadline - System.currentTimeMillis(), Boolean.TRUE::equals);
+            if (operation.getType() == DistributedLockCacheOperation.Type.SET_IF_ABSENT) {
+                success = success && isValid(start, operation.getTimeUnit().toMillis(operation.getTtl()));
+                if (success) {
+                    recordGrant(operation.getKey(), () -> granted(opFutures, Boolean.TRUE::equals),
+                            start + operation.getTimeUnit().toMillis(operation.getTtl()));
+                } else {
+                    rollback.add(DistributedLockCacheOperation.delete(operation.getKey(), operation.getValue()));
+                }
+            } else if (operation.getType() == DistributedLockCacheOperation.Type.DELETE) {
+                grantedNodes.remove(operation.getKey());
+            } else if (success) {
+                onRenewed(operation.getKey(), operation.getTtl(), operation.getTimeUnit());
+            }
+            results.add(success);
+        }
+        if (!rollback.isEmpty()) {
+            fanOut(node -> node.executeBatch(rollback));
+        }
+        return results;
+    }
+
+    /**
+     * 在授予了租约的节点上注册过期监听，当过期节点数使锁失去多数派时触发一次回调
+     * 未授予租约的节点不会触发过期事件，失去多数派的阈值按授予租约的节点数计算
+     */
+    @Override
+    public void registerLockExpirationEvent(String key, Runnable eventCallback) {
+        Grant grant = grantedNodes.get(key);
+        List<DistributedLockCache> granted = grant == null ? nodes : grant.nodes.get();
+        int lostThreshold = Math.max(1, granted.size() - quorum + 1);
+        AtomicInteger expiredNodes = new AtomicInteger();
+        AtomicBoolean fired = new AtomicBoolean(false);
+        Runnable nodeCallback = () -> {
+            if (expiredNodes.incrementAndGet() >= lostThreshold && fired.compareAndSet(false, true)) {
+                eventCallback.run();
+            }
+        };
+        for (DistributedLockCache node : granted) {
+            node.registerLockExpirationEvent(key, nodeCallback);
+        }
+    }
+
+    @Override
+    public void unregisterLockExpirationEvent(String key) {
+        for (DistributedLockCache node : nodes) {
+            node.unregisterLockExpirationEvent(key);
+        }
+    }
+
+    @Override
+    public void subscribeLockRelease(Consumer<String> listener) {
+        for (DistributedLockCache node : nodes) {
+            node.subscribeLockRelease(listener);
+        }
+    }
+
+    /**
+     * 消息只需送达一个节点，所有订阅者都在每个节点上订阅；依次尝试直到有节点成功广播
+     */
+    @Override
+    public boolean publish(String channel, String message) {
+        for (DistributedLockCache node : nodes) {
+            try {
+                if (node.publish(channel, message)) {
+                    return true;
+                }
+            } catch (Exception e) {
+                log.warn("publish to lock cache node failed, channel:" + channel, e);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean subscribe(String channel, Consumer<String> listener) {
+        boolean supported = false;
+        for (DistributedLockCache node : nodes) {
+            supported |= node.subscribe(channel, listener);
+        }
+        return supported;
+    }
+
+    private <T> List<CompletableFuture<T>> fanOut(Function<DistributedLockCache, T> operation) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(nodes.size());
+        for (DistributedLockCache node : nodes) {
+            futures.add(CompletableFuture.supplyAsync(() -> operation.apply(node), executorService));
+        }
+        return futures;
+    }
+
+    /**
+     * 等待直到多数派节点结果满足条件(返回true)，或剩余节点已不可能凑齐多数派，或超时(返回false)
+     * 节点抛出异常视为失败
+     */
+    private <T> boolean awaitQuorum(List<CompletableFuture<T>> futures, long timeoutMills,
+                                    Predicate<T> succeeded) {
+        int[] tally = new int[2];
+        Object monitor = new Object();
+        for (CompletableFuture<T> future : futures) {
+            future.whenComplete((result, e) -> {
+                synchronized (monitor) {
+                    tally[e == null && succeeded.test(result) ? 0 : 1]++;
+                    monitor.notifyAll();
+                }
+            });
+        }
+        long deadline = System.currentTimeMillis() + timeoutMills;
+        synchronized (monitor) {
+            while (tally[0] < quorum && tally[1] <= futures.size() - quorum) {
+                long remain = deadline - System.currentTimeMillis();
+                if (remain <= 0) {
+                    return false;
+                }
+                try {
+                    monitor.wait(remain);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return tally[0] >= quorum;
+        }
+    }
+
+    private void awaitAck(List<CompletableFuture<Boolean>> futures, String operation, Object keys) {
+        if (!awaitQuorum(futures, operationTimeoutMills, Boolean.TRUE::equals)) {
+            log.warn(operation + " not acknowledged by quorum(" + quorum + "/" + nodes.size() + "), keys:" + keys);
+        }
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdown();
+    }
+
+}
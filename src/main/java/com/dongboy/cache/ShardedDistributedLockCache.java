@@ -0,0 +1,495 @@
+package com.dongboy.cache;
+
+import com.dongboy.lock.LockMode;
+import com.dongboy.result.DistributedLockAcquireResult;
+import com.dongboy.service.DistributedLockCache;
+import com.dongboy.service.DistributedLockCacheOperation;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 一致性哈希分片的分布式锁缓存
+ * 每个key按哈希环(带虚拟节点)路由到一个分片，增删分片时只有相邻区间的key会被重新映射
+ * <p>
+ * 增删分片后进入迁移期：被重新映射的key在新旧两个分片上都要加锁成功才算获取到，续期和释放也同时作用于两个分片，
+ * 因此仍按旧哈希环路由的节点和已切换的节点之间照常互斥。所有节点都完成分片变更、且变更前获取的锁都已释放后，
+ * 再调用{@link #completeMigration()}结束迁移期，之后只按新哈希环路由；迁移期内不允许再次变更分片
+ * 非迁移期只记录租约的最晚过期时间，逐个租约的记录只在迁移期内进行，结束迁移时清空
+ *
+ * @Author dongboy
+ * @what time    2026/10/19 13:40
+ */
+@Slf4j
+public class ShardedDistributedLockCache implements DistributedLockCache {
+
+    private static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final int virtualNodes;
+
+    private final Map<String, DistributedLockCache> shards = new LinkedHashMap<>();
+
+    // 写时复制的哈希环，读路径无锁
+    private volatile NavigableMap<Long, DistributedLockCache> ring = Collections.emptyNavigableMap();
+
+    // 分片变更前的哈希环，迁移期内不为null
+    private volatile NavigableMap<Long, DistributedLockCache> previousRing;
+
+    // 哈希环版本，每次分片变更加一
+    private volatile long ringVersion;
+
+    // 迁移期内续期或释放前无法确定获取时版本的租约，按变更前获取处理
+    private static final long UNKNOWN_VERSION = -1;
+
+    // 迁移期内本实例持有的租约 -> 获取时的哈希环版本，结束迁移前据此确认变更前获取的锁都已释放
+    private final Map<String, HeldLease> heldLeases = new ConcurrentHashMap<>();
+
+    // 非迁移期获取或续期的租约中最晚的过期时间；迁移期内未再续期的变更前租约最晚在此时过期
+    private final AtomicLong unmigratedExpireAtMills = new AtomicLong();
+
+    // 注册过期事件时所在的分片，保证分片变更后仍能在原分片上注销
+    private final Map<String, List<DistributedLockCache>> eventShards = new ConcurrentHashMap<>();
+
+    // 释放通知的订阅者，新加入的分片也需要订阅
+    private final List<Consumer<String>> releaseListeners = new CopyOnWriteArrayList<>();
+
+    // 频道消息的订阅者，新加入的分片同样需要订阅
+    private final List<Map.Entry<String, Consumer<String>>> channelListeners = new CopyOnWriteArrayList<>();
+
+    public ShardedDistributedLockCache(Map<String, DistributedLockCache> shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ShardedDistributedLockCache(Map<String, DistributedLockCache> shards, int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtual nodes:" + virtualNodes);
+        }
+        this.virtualNodes = virtualNodes;
+        shards.forEach((name, cache) -> {
+            if (this.shards.put(name, cache) != null) {
+                throw new IllegalArgumentException("duplicate shard:" + name);
+            }
+        });
+        rebuildRing();
+    }
+
+    private static class HeldLease {
+
+        private final long ringVersion;
+
+        private volatile long expireAtMills;
+
+        private HeldLease(long ringVersion, long expireAtMills) {
+            this.ringVersion = ringVersion;
+            this.expireAtMills = expireAtMills;
+        }
+
+    }
+
+    /**
+     * 加入分片并进入迁移期
+     */
+    public synchronized void addShard(String name, DistributedLockCache cache) {
+        if (shards.containsKey(name)) {
+            throw new IllegalArgumentException("duplicate shard:" + name);
+        }
+        beginMigration();
+        shards.put(name, cache);
+        releaseListeners.forEach(cache::subscribeLockRelease);
+        channelListeners.forEach(listener -> cache.subscribe(listener.getKey(), listener.getValue()));
+        rebuildRing();
+        log.info("added lock cache shard:" + name);
+    }
+
+    /**
+     * 移除分片并进入迁移期，迁移期内被移除的分片仍会被访问
+     */
+    public synchronized void removeShard(String name) {
+        if (shards.containsKey(name)) {
+            beginMigration();
+            shards.remove(name);
+            rebuildRing();
+            log.info("removed lock cache shard:" + name);
+        }
+    }
+
+    private void beginMigration() {
+        if (previousRing != null) {
+            throw new IllegalStateException("shard migration in progress, complete it before changing shards again");
+        }
+        // 先发布旧哈希环再切换，读到新哈希环的线程一定也能读到旧哈希环
+        previousRing = ring;
+        ringVersion++;
+    }
+
+    /**
+     * 结束迁移期，之后只按新哈希环路由
+     * 须在所有节点都完成分片变更后调用；本实例仍持有变更前获取的锁时拒绝结束：
+     * 迁移期内续期过的变更前租约须已释放或过期，其余变更前租约须已过最晚过期时间(至多一个租约时长)
+     */
+    public synchronized void completeMigration() {
+        if (previousRing == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        evictExpiredLeases(now);
+        long pending = heldLeases.values().stream()
+                .filter(lease -> lease.ringVersion < ringVersion)
+                .count();
+        if (pending > 0) {
+            throw new IllegalStateException(pending + " locks acquired before shard migration are still held");
+        }
+        long unmigratedRemain = unmigratedExpireAtMills.get() - now;
+        if (unmigratedRemain > 0) {
+            throw new IllegalStateException("locks acquired before shard migration may still be held for " + unmigratedRemain + "ms");
+        }
+        previousRing = null;
+        heldLeases.clear();
+        log.info("completed lock cache shard migration");
+    }
+
+    private void evictExpiredLeases(long now) {
+        heldLeases.values().removeIf(lease -> lease.expireAtMills <= now);
+    }
+
+    public boolean isMigrating() {
+        return previousRing != null;
+    }
+
+    public synchronized Map<String, DistributedLockCache> getShards() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+    }
+
+    private void rebuildRing() {
+        NavigableMap<Long, DistributedLockCache> newRing = new TreeMap<>();
+        shards.forEach((name, cache) -> {
+            for (int i = 0; i < virtualNodes; i++) {
+                newRing.put(hash(name + "#" + i), cache);
+            }
+        });
+        ring = newRing;
+    }
+
+    public DistributedLockCache shardOf(String key) {
+        return shardOf(ring, key);
+    }
+
+    private static DistributedLockCache shardOf(NavigableMap<Long, DistributedLockCache> currentRing, String key) {
+        if (currentRing.isEmpty()) {
+            throw new IllegalStateException("no lock cache shard available");
+        }
+        Map.Entry<Long, DistributedLockCache> entry = currentRing.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : currentRing.firstEntry().getValue();
+    }
+
+    /**
+     * key当前需要访问的分片：迁移期内被重新映射的key为旧分片和新分片，旧分片在前保证各节点加锁顺序一致
+     */
+    private List<DistributedLockCache> shardsOf(String key) {
+        DistributedLockCache current = shardOf(ring, key);
+        NavigableMap<Long, DistributedLockCache> previous = previousRing;
+        if (previous != null && !previous.isEmpty()) {
+            DistributedLockCache old = shardOf(previous, key);
+            if (old != current) {
+                return Arrays.asList(old, current);
+            }
+        }
+        return Collections.singletonList(current);
+    }
+
+    /**
+     * FNV-1a 64位哈希 + murmur3 的finalizer，保证虚拟节点在环上分布均匀
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 按分片分组，迁移期内被重新映射的key同时出现在新旧两个分片的分组中
+     */
+    private Map<DistributedLockCache, List<Integer>> groupByShard(List<String> keys) {
+        Map<DistributedLockCache, List<Integer>> groups = new IdentityHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            for (DistributedLockCache shard : shardsOf(keys.get(i))) {
+                groups.computeIfAbsent(shard, k -> new ArrayList<>()).add(i);
+            }
+        }
+        return groups;
+    }
+
+    private void onAcquired(String leaseId, long version, long ttl, TimeUnit timeUnit) {
+        long expireAtMills = System.currentTimeMillis() + timeUnit.toMillis(ttl);
+        if (isMigrating()) {
+            heldLeases.put(leaseId, new HeldLease(version, expireAtMills));
+        } else {
+            // 迁移可能在此之后开始，此时记录的最晚过期时间仍会被结束迁移时检查
+            recordUnmigrated(expireAtMills);
+        }
+    }
+
+    private void onRenewed(String leaseId, long ttl, TimeUnit timeUnit) {
+        long expireAtMills = System.currentTimeMillis() + timeUnit.toMillis(ttl);
+        if (isMigrating()) {
+            heldLeases.computeIfAbsent(leaseId, k -> new HeldLease(UNKNOWN_VERSION, expireAtMills)).expireAtMills = expireAtMills;
+        } else {
+            recordUnmigrated(expireAtMills);
+        }
+    }
+
+    private void recordUnmigrated(long expireAtMills) {
+        long current;
+        while ((current = unmigratedExpireAtMills.get()) < expireAtMills) {
+            if (unmigratedExpireAtMills.compareAndSet(current, expireAtMills)) {
+                return;
+            }
+        }
+    }
+
+    private static String modeLeaseId(String key, String value, LockMode mode) {
+        return key + '\u0000' + value + '\u0000' + mode;
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+        long version = ringVersion;
+        List<DistributedLockCache> targets = shardsOf(key);
+        for (int i = 0; i < targets.size(); i++) {
+            if (!targets.get(i).setIfAbsent(key, value, ttl, timeUnit)) {
+                rollback(targets.subList(0, i), key, value);
+                return false;
+            }
+        }
+        onAcquired(key, version, ttl, timeUnit);
+        return true;
+    }
+
+    @Override
+    public DistributedLockAcquireResult trySetIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+        long version = ringVersion;
+        List<DistributedLockCache> targets = shardsOf(key);
+        DistributedLockAcquireResult result = null;
+        for (int i = 0; i < targets.size(); i++) {
+            result = targets.get(i).trySetIfAbsent(key, value, ttl, timeUnit);
+            if (!result.isAcquired()) {
+                rollback(targets.subList(0, i), key, value);
+                return result;
+            }
+        }
+        onAcquired(key, version, ttl, timeUnit);
+        return result;
+    }
+
+    private static void rollback(List<DistributedLockCache> acquiredShards, String key, String value) {
+        acquiredShards.forEach(shard -> shard.delete(key, value));
+    }
+
+    @Override
+    public void expire(String key, long ttl, TimeUnit timeUnit) {
+        shardsOf(key).forEach(shard -> shard.expire(key, ttl, timeUnit));
+        onRenewed(key, ttl, timeUnit);
+    }
+
+    @Override
+    public void expireAll(Collection<String> keys, long ttl, TimeUnit timeUnit) {
+        List<String> keyList = new ArrayList<>(keys);
+        groupByShard(keyList).forEach((shard, indexes) -> {
+            List<String> shardKeys = new ArrayList<>(indexes.size());
+            indexes.forEach(i -> shardKeys.add(keyList.get(i)));
+            shard.expireAll(shardKeys, ttl, timeUnit);
+        });
+        keyList.forEach(key -> onRenewed(key, ttl, timeUnit));
+        if (isMigrating()) {
+            // 批量续期是周期性的，借此清理迁移期内自然过期、未被释放的租约记录
+            evictExpiredLeases(System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public void delete(String key, String value) {
+        shardsOf(key).forEach(shard -> shard.delete(key, value));
+        heldLeases.remove(key);
+    }
+
+    /**
+     * 每个分片各做一次全有或全无的批量获取；任一分片失败时回滚已成功的分片，返回该分片报告被占用的key
+     */
+    @Override
+    public List<String> trySetAllIfAbsent(List<String> keys, String value, long ttl, TimeUnit timeUnit) {
+        long version = ringVersion;
+        Map<DistributedLockCache, List<Integer>> groups = groupByShard(keys);
+        Map<DistributedLockCache, List<String>> acquired = new IdentityHashMap<>();
+        for (Map.Entry<DistributedLockCache, List<Integer>> group : groups.entrySet()) {
+            List<String> shardKeys = new ArrayList<>(group.getValue().size());
+            group.getValue().forEach(i -> shardKeys.add(keys.get(i)));
+            List<String> conflicts = group.getKey().trySetAllIfAbsent(shardKeys, value, ttl, timeUnit);
+            if (conflicts.isEmpty()) {
+                acquired.put(group.getKey(), shardKeys);
+            } else {
+                acquired.forEach((shard, shardAcquiredKeys) -> {
+                    List<DistributedLockCacheOperation> rollback = new ArrayList<>(shardAcquiredKeys.size());
+                    shardAcquiredKeys.forEach(key -> rollback.add(DistributedLockCacheOperation.delete(key, value)));
+                    shard.executeBatch(rollback);
+                });
+                return conflicts;
+            }
+        }
+        keys.forEach(key -> onAcquired(key, version, ttl, timeUnit));
+        return Collections.emptyList();
+    }
+
+    /**
+     * 迁移期内同一个操作可能落到两个分片，都成功才算成功；加锁只在一个分片成功时回滚该分片
+     */
+    @Override
+    public List<Boolean> executeBatch(List<DistributedLockCacheOperation> operations) {
+        long version = ringVersion;
+        List<String> keys = new ArrayList<>(operations.size());
+        operations.forEach(operation -> keys.add(operation.getKey()));
+        Boolean[] results = new Boolean[operations.size()];
+        Map<Integer, List<DistributedLockCache>> acquiredShards = new HashMap<>();
+        groupByShard(keys).forEach((shard, indexes) -> {
+            List<DistributedLockCacheOperation> shardOperations = new ArrayList<>(indexes.size());
+            indexes.forEach(i -> shardOperations.add(operations.get(i)));
+            List<Boolean> shardResults = shard.executeBatch(shardOperations);
+            for (int i = 0; i < indexes.size(); i++) {
+                int index = indexes.get(i);
+                boolean success = shardResults.get(i);
+                results[index] = results[index] == null ? success : results[index] && success;
+                if (success && operations.get(index).getType() == DistributedLockCacheOperation.Type.SET_IF_ABSENT) {
+                    acquiredShards.computeIfAbsent(index, k -> new ArrayList<>()).add(shard);
+                }
+            }
+        });
+        for (int i = 0; i < operations.size(); i++) {
+            DistributedLockCacheOperation operation = operations.get(i);
+            switch (operation.getType()) {
+                case SET_IF_ABSENT:
+                    if (results[i]) {
+                        onAcquired(operation.getKey(), version, operation.getTtl(), operation.getTimeUnit());
+                    } else if (acquiredShards.containsKey(i)) {
+                        rollback(acquiredShards.get(i), operation.getKey(), operation.getValue());
+                    }
+                    break;
+                case EXPIRE:
+                    if (results[i]) {
+                        onRenewed(operation.getKey(), operation.getTtl(), operation.getTimeUnit());
+                    }
+                    break;
+                case DELETE:
+                    heldLeases.remove(operation.getKey());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public boolean setModeIfCompatible(String key, String value, LockMode mode, long ttl, TimeUnit timeUnit) {
+        long version = ringVersion;
+        List<DistributedLockCache> targets = shardsOf(key);
+        for (int i = 0; i < targets.size(); i++) {
+            if (!targets.get(i).setModeIfCompatible(key, value, mode, ttl, timeUnit)) {
+                targets.subList(0, i).forEach(shard -> shard.deleteMode(key, value, mode));
+                return false;
+            }
+        }
+        if (isMigrating()) {
+            heldLeases.putIfAbsent(modeLeaseId(key, value, mode), new HeldLease(version, 0));
+        }
+        onRenewed(modeLeaseId(key, value, mode), ttl, timeUnit);
+        return true;
+    }
+
+    @Override
+    public void expireMode(String key, String value, LockMode mode, long ttl, TimeUnit timeUnit) {
+        shardsOf(key).forEach(shard -> shard.expireMode(key, value, mode, ttl, timeUnit));
+        onRenewed(modeLeaseId(key, value, mode), ttl, timeUnit);
+    }
+
+    @Override
+    public void deleteMode(String key, String value, LockMode mode) {
+        shardsOf(key).forEach(shard -> shard.deleteMode(key, value, mode));
+        heldLeases.remove(modeLeaseId(key, value, mode));
+    }
+
+    /**
+     * 迁移期内在新旧两个分片上都注册，任一分片上的租约过期都只通知一次
+     */
+    @Override
+    public void registerLockExpirationEvent(String key, Runnable eventCallback) {
+        List<DistributedLockCache> targets = shardsOf(key);
+        eventShards.put(key, targets);
+        if (targets.size() == 1) {
+            targets.get(0).registerLockExpirationEvent(key, eventCallback);
+            return;
+        }
+        AtomicBoolean fired = new AtomicBoolean(false);
+        Runnable once = () -> {
+            if (fired.compareAndSet(false, true)) {
+                eventCallback.run();
+            }
+        };
+        targets.forEach(shard -> shard.registerLockExpirationEvent(key, once));
+    }
+
+    @Override
+    public void unregisterLockExpirationEvent(String key) {
+        List<DistributedLockCache> targets = eventShards.remove(key);
+        (targets != null ? targets : shardsOf(key)).forEach(shard -> shard.unregisterLockExpirationEvent(key));
+    }
+
+    @Override
+    public synchronized void subscribeLockRelease(Consumer<String> listener) {
+        releaseListeners.add(listener);
+        shards.values().forEach(shard -> shard.subscribeLockRelease(listener));
+    }
+
+    /**
+     * 订阅者在每个分片上都订阅，消息按频道路由到一个分片广播即可
+     */
+    @Override
+    public boolean publish(String channel, String message) {
+        return shardOf(channel).publish(channel, message);
+    }
+
+    @Override
+    public synchronized boolean subscribe(String channel, Consumer<String> listener) {
+        channelListeners.add(new AbstractMap.SimpleImmutableEntry<>(channel, listener));
+        boolean supported = false;
+        for (DistributedLockCache shard : shards.values()) {
+            supported |= shard.subscribe(channel, listener);
+        }
+        return supported;
+    }
+
+}
@@ -13,6 +13,21 @@ public enum DistributedLockResponseCode {
     LOCK_EXPIRED,
 
     // 加锁等待超时，只发生在使用规定了等待锁超时时间的阻塞方式加锁时
-    WAIT_TIMEOUT_EXCEEDED
+    WAIT_TIMEOUT_EXCEEDED,
+
+    // 非阻塞方式加锁失败
+    LOCK_NOT_ACQUIRED,
+
+    // 同一个key上等待加锁的线程数超过上限，请求被直接拒绝
+    TOO_MANY_WAITERS,
+
+    // 当前线程未持有锁，不能在该锁的条件上等待或唤醒
+    LOCK_NOT_HELD,
+
+    // 加锁等待与其他线程(可能在其他节点)构成死锁，当前线程被选为牺牲者，放弃等待
+    DEADLOCK_VICTIM,
+
+    // 节点正在下线，不再接受新的加锁(包括条件变量唤醒后的重新加锁)，已持有锁的重入不受影响
+    SERVICE_SHUTTING_DOWN
 
 }
@@ -0,0 +1,37 @@
+package com.dongboy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 加锁事件，事件持续时间即等待锁的时间
+ *
+ * @Author dongboy
+ * @what time    2026/10/19 16:20
+ */
+@Name("com.dongboy.LockAcquire")
+@Label("Distributed Lock Acquire")
+@Category("Distributed Lock")
+@Description("加锁(lock/tryLock)，持续时间为等待锁的时间")
+public class LockAcquireEvent extends Event {
+
+    @Label("Lock Key")
+    public String lockKey;
+
+    @Label("Lock Type")
+    public String lockType;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Spin Count")
+    @Description("未获取到锁后的自旋次数")
+    public int spinCount;
+
+    @Label("Outcome")
+    public String outcome;
+
+}
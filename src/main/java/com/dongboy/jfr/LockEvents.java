@@ -0,0 +1,65 @@
+package com.dongboy.jfr;
+
+/**
+ * JFR事件的创建入口
+ * jdk.jfr 只在 8u262 及以上的JDK中存在，更早的Java 8上加载事件类会抛出NoClassDefFoundError；
+ * 类加载时检查一次，不可用时各方法返回null，调用方据此跳过事件的填充和提交
+ *
+ * @Author dongboy
+ * @what time    2026/10/23 10:05
+ */
+public final class LockEvents {
+
+    public static final boolean AVAILABLE = isJfrAvailable();
+
+    private LockEvents() {
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    public static LockAcquireEvent beginAcquire() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        LockAcquireEvent event = new LockAcquireEvent();
+        event.begin();
+        return event;
+    }
+
+    public static LockReleaseEvent beginRelease() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        LockReleaseEvent event = new LockReleaseEvent();
+        event.begin();
+        return event;
+    }
+
+    public static LockRenewEvent beginRenew() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        LockRenewEvent event = new LockRenewEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * 过期事件是瞬时事件，不需要begin；JFR不可用或未启用该事件时返回null
+     */
+    public static LockExpireEvent expireIfEnabled() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        LockExpireEvent event = new LockExpireEvent();
+        return event.shouldCommit() ? event : null;
+    }
+
+}
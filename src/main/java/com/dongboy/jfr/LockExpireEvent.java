@@ -0,0 +1,32 @@
+package com.dongboy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 锁过期事件
+ *
+ * @Author dongboy
+ * @what time    2026/10/19 16:26
+ */
+@Name("com.dongboy.LockExpire")
+@Label("Distributed Lock Expire")
+@Category("Distributed Lock")
+@Description("持有中的锁过期，持有线程失去锁")
+public class LockExpireEvent extends Event {
+
+    @Label("Lock Key")
+    public String lockKey;
+
+    @Label("Holding Thread")
+    public Thread holdingThread;
+
+    @Label("Hold Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    public long holdDuration;
+
+}
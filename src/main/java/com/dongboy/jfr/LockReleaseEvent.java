@@ -0,0 +1,35 @@
+package com.dongboy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 解锁事件
+ *
+ * @Author dongboy
+ * @what time    2026/10/19 16:22
+ */
+@Name("com.dongboy.LockRelease")
+@Label("Distributed Lock Release")
+@Category("Distributed Lock")
+@Description("解锁，记录锁的持有时长")
+public class LockReleaseEvent extends Event {
+
+    @Label("Lock Key")
+    public String lockKey;
+
+    @Label("Lock Type")
+    public String lockType;
+
+    @Label("Hold Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    public long holdDuration;
+
+    @Label("Outcome")
+    public String outcome;
+
+}
@@ -0,0 +1,36 @@
+package com.dongboy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 续期事件，一次批量续期对应一个事件
+ *
+ * @Author dongboy
+ * @what time    2026/10/19 16:24
+ */
+@Name("com.dongboy.LockRenew")
+@Label("Distributed Lock Renew")
+@Category("Distributed Lock")
+@Description("续期任务的一次批量续期")
+public class LockRenewEvent extends Event {
+
+    @Label("Lock Keys")
+    @Description("本批续期的key，超长时截断")
+    public String lockKeys;
+
+    @Label("Key Count")
+    public int keyCount;
+
+    @Label("TTL")
+    @Timespan(Timespan.MILLISECONDS)
+    public long ttl;
+
+    @Label("Outcome")
+    public String outcome;
+
+}
@@ -0,0 +1,88 @@
+package com.dongboy.lock;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 本节点上各条件变量的等待者，由DistributedLockService持有
+ * 只为有等待者的条件保留条目，最后一个等待者离开时移除；登记、移除和唤醒都在条目上原子地完成
+ *
+ * @Author dongboy
+ * @what time    2026/10/23 20:40
+ */
+public class ConditionWaiters {
+
+    // 条件key -> 按到达顺序排列的等待者
+    private final Map<String, Queue<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    static final class Waiter {
+
+        final Thread thread;
+
+        volatile boolean signalled;
+
+        private Waiter(Thread thread) {
+            this.thread = thread;
+        }
+
+    }
+
+    Waiter add(String conditionKey, Thread thread) {
+        Waiter waiter = new Waiter(thread);
+        waiters.compute(conditionKey, (k, queue) -> {
+            Queue<Waiter> result = queue == null ? new ArrayDeque<>() : queue;
+            result.add(waiter);
+            return result;
+        });
+        return waiter;
+    }
+
+    /**
+     * @return 等待者仍在队列中返回true；返回false说明唤醒者已经取走了它
+     */
+    boolean remove(String conditionKey, Waiter waiter) {
+        boolean[] removed = {false};
+        waiters.computeIfPresent(conditionKey, (k, queue) -> {
+            removed[0] = queue.remove(waiter);
+            return queue.isEmpty() ? null : queue;
+        });
+        return removed[0];
+    }
+
+    /**
+     * 唤醒一个或全部等待者，没有等待者时忽略
+     */
+    void wake(String conditionKey, boolean all) {
+        waiters.computeIfPresent(conditionKey, (k, queue) -> {
+            Waiter waiter;
+            while ((waiter = queue.poll()) != null) {
+                waiter.signalled = true;
+                LockSupport.unpark(waiter.thread);
+                if (!all) {
+                    break;
+                }
+            }
+            return queue.isEmpty() ? null : queue;
+        });
+    }
+
+    public int count(String conditionKey) {
+        int[] count = {0};
+        waiters.computeIfPresent(conditionKey, (k, queue) -> {
+            count[0] = queue.size();
+            return queue;
+        });
+        return count[0];
+    }
+
+    /**
+     * 有等待者的条件数
+     */
+    public int conditionCount() {
+        return waiters.size();
+    }
+
+}
@@ -1,12 +1,13 @@
 package com.dongboy.lock;
 
+import com.dongboy.exception.DistributeLockException;
+import com.dongboy.exception.DistributedLockResponseCode;
+import com.dongboy.jfr.LockAcquireEvent;
+import com.dongboy.jfr.LockReleaseEvent;
 import com.dongboy.service.DistributedLockService;
 import lombok.Getter;
 
-import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @Author dongboy
@@ -17,28 +18,25 @@ public abstract class DistributedBaseLock implements DistributedLock {
     @Getter
     protected final String lockKey;
 
-    //持有当前锁的线程，若没有线程持有当前锁，则为null
-    protected final AtomicReference<Thread> heldBy = new AtomicReference<>(null);
-
-    // 记录锁对某线程的过期状态
-    // 锁过期后，其他线程可以获得锁，此时该锁对本线程而言已经过期，但是对其他线程而言没有过期，所以需要分别记录该锁对于每个线程的过期状态
-    protected Map<Thread, Boolean> redisKeyExpired = new ConcurrentHashMap<>();
+    @Getter
+    protected final DistributedLockService lockService;
 
     // 默认锁续期时间 10s
     protected static final long DEFAULT_LOCK_TIMEOUT = 10000;
 
     protected static final long LOCK_SPIN_WAIT_TIME_MILLIS = 10;
 
-    public DistributedBaseLock(String lockKey) {
+    public DistributedBaseLock(String lockKey, DistributedLockService lockService) {
         this.lockKey = lockKey;
+        this.lockService = lockService;
     }
 
     @Override
     public String toString() {
         return this.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(this))
                 + "{" + "lockKey='" + lockKey + '\''
-                + (heldBy.get() != null ? (",heldBy=" + heldBy.get().getName() + ":" + heldBy.get().getId()) : ",heldBy=null")
-                + ",redisKeyExpired=" + redisKeyExpired.getOrDefault(Thread.currentThread(), false)
+                + (getHoldingThread() != null ? (",heldBy=" + getHoldingThread().getName() + ":" + getHoldingThread().getId()) : ",heldBy=null")
+                + ",redisKeyExpired=" + isExpire()
                 + "}";
     }
 
@@ -65,17 +63,64 @@ public abstract class DistributedBaseLock implements DistributedLock {
     }
 
     protected String getLockHolderID() {
-        return DistributedLockService.getClientId() + ":" + Thread.currentThread().getId();
+        return getLockHolderID(Thread.currentThread());
+    }
+
+    public String getLockHolderID(Thread thread) {
+        return lockService.getHolderId(thread);
+    }
+
+    /**
+     * 节点下线后不再发起新的加锁
+     */
+    protected void checkAcceptingAcquisitions() {
+        if (lockService.isShuttingDown()) {
+            throw new DistributeLockException(DistributedLockResponseCode.SERVICE_SHUTTING_DOWN);
+        }
     }
 
     protected boolean isPositive(Long number) {
         return number != null && number > 0;
     }
 
-    public Thread getHoldingThread() {
-        return heldBy.get();
+    /**
+     * JFR不可用时event为null，JFR未开启或未启用该事件时shouldCommit为false，两种情况都不做任何额外工作
+     */
+    protected void commitAcquireEvent(LockAcquireEvent event, String operation, int spinCount, String outcome) {
+        if (event != null && event.shouldCommit()) {
+            event.lockKey = lockKey;
+            event.lockType = getClass().getSimpleName();
+            event.operation = operation;
+            event.spinCount = spinCount;
+            event.outcome = outcome;
+            event.commit();
+        }
     }
 
+    protected void commitReleaseEvent(LockReleaseEvent event, String outcome) {
+        if (event != null && event.shouldCommit()) {
+            commitReleaseEvent(event, outcome, getHeldSinceNanos());
+        }
+    }
+
+    /**
+     * 锁状态已被清除时，由调用方传入清除前读到的加锁时间
+     */
+    protected void commitReleaseEvent(LockReleaseEvent event, String outcome, long heldSinceNanos) {
+        if (event != null && event.shouldCommit()) {
+            event.lockKey = lockKey;
+            event.lockType = getClass().getSimpleName();
+            event.holdDuration = System.nanoTime() - heldSinceNanos;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    /**
+     * 最近一次获得锁的时间(System.nanoTime)，用于JFR事件中的持有时长
+     */
+    protected abstract long getHeldSinceNanos();
+
     public boolean isHeldByThread(Thread thread) {
         return getHoldingThread() == thread;
     }
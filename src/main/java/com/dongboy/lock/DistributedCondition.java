@@ -0,0 +1,151 @@
+package com.dongboy.lock;
+
+import com.dongboy.exception.DistributeLockException;
+import com.dongboy.exception.DistributedLockResponseCode;
+import com.dongboy.service.DistributedLockService;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 绑定在DistributedReentrantLock上的分布式条件变量
+ * await原子地释放锁并休眠，直到被唤醒、超时或中断，返回前重新获得锁；signal/signalAll通过缓存的广播唤醒所有节点上的等待者
+ * 与java.util.concurrent.locks.Condition一样允许虚假唤醒，调用方应在循环中重新检查条件；
+ * signal在每个节点上各唤醒一个等待者，后端不支持广播时等待者每隔POLL_INTERVAL_MILLS被虚假唤醒一次
+ *
+ * @Author dongboy
+ * @what time    2026/10/20 14:10
+ */
+@Slf4j
+public class DistributedCondition {
+
+    public static final String SIGNAL_CHANNEL = "dongboy:condition";
+
+    private static final char SIGNAL_ONE = '1';
+
+    private static final char SIGNAL_ALL = '*';
+
+    // 后端不支持广播时等待的最长时长，之后由调用方重新检查条件
+    private static final long POLL_INTERVAL_MILLS = 100;
+
+    @Getter
+    private final String conditionKey;
+
+    private final DistributedReentrantLock lock;
+
+    // 本节点上的等待者由服务持有，被唤醒者从队列中取出；等待者超时后能否从队列中移除自己决定了是否已被唤醒
+    private final ConditionWaiters waiters;
+
+    private DistributedCondition(String conditionKey, DistributedReentrantLock lock) {
+        this.conditionKey = conditionKey;
+        this.lock = lock;
+        this.waiters = lock.getLockService().getConditionWaiters();
+    }
+
+    /**
+     * 条件变量和锁一样只是视图，同名条件的等待者登记在服务的ConditionWaiters中
+     */
+    static DistributedCondition get(DistributedReentrantLock lock, String name) {
+        return new DistributedCondition(lock.getBackendKey() + ":condition:" + name, lock);
+    }
+
+    /**
+     * 处理广播来的唤醒消息，本节点上没有该条件的等待者时忽略
+     */
+    public static void deliver(DistributedLockService lockService, String message) {
+        if (message == null || message.length() < 2) {
+            return;
+        }
+        lockService.getConditionWaiters().wake(message.substring(1), message.charAt(0) == SIGNAL_ALL);
+    }
+
+    public void await() throws InterruptedException {
+        await(-1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param time 最长等待时间，小于0时不限时
+     * @return 超时返回false，被唤醒(包括虚假唤醒)返回true
+     */
+    public boolean await(long time, TimeUnit unit) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        checkHeldByCurrentThread();
+        long deadline = time >= 0 ? System.nanoTime() + unit.toNanos(time) : -1;
+        boolean polling = !lock.getLockService().isBroadcastSupported();
+        Long lockTime = lock.getHoldLockTime();
+        // 先登记再释放锁，释放锁之后、休眠之前到达的唤醒不会丢失
+        ConditionWaiters.Waiter waiter = waiters.add(conditionKey, Thread.currentThread());
+        int depth;
+        try {
+            depth = lock.fullyRelease();
+        } catch (RuntimeException e) {
+            waiters.remove(conditionKey, waiter);
+            throw e;
+        }
+        boolean interrupted = false;
+        boolean timedOut = false;
+        while (!waiter.signalled) {
+            long parkNanos = polling ? TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MILLS) : Long.MAX_VALUE;
+            if (deadline >= 0) {
+                long remain = deadline - System.nanoTime();
+                if (remain <= 0) {
+                    timedOut = true;
+                    break;
+                }
+                parkNanos = Math.min(parkNanos, remain);
+            }
+            LockSupport.parkNanos(this, parkNanos);
+            if (Thread.interrupted()) {
+                interrupted = true;
+                break;
+            }
+            if (polling) {
+                break;
+            }
+        }
+        // 未能移除说明唤醒者已经取走了本等待者
+        boolean signalled = !waiters.remove(conditionKey, waiter);
+        lock.reacquire(depth, lockTime);
+        if (interrupted) {
+            if (signalled) {
+                // 把被中断线程消耗掉的唤醒转交给本节点其他等待者
+                waiters.wake(conditionKey, false);
+            }
+            throw new InterruptedException();
+        }
+        return signalled || !timedOut;
+    }
+
+    public void signal() {
+        publish(SIGNAL_ONE);
+    }
+
+    public void signalAll() {
+        publish(SIGNAL_ALL);
+    }
+
+    private void publish(char mode) {
+        checkHeldByCurrentThread();
+        DistributedLockService lockService = lock.getLockService();
+        // 后端不支持广播时只能唤醒本节点的等待者，其他节点靠轮询
+        if (!lockService.getLockCache().publish(SIGNAL_CHANNEL, mode + conditionKey)) {
+            waiters.wake(conditionKey, mode == SIGNAL_ALL);
+        }
+    }
+
+    private void checkHeldByCurrentThread() {
+        if (!lock.isHeldByCurrentThread()) {
+            throw new DistributeLockException(DistributedLockResponseCode.LOCK_NOT_HELD);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DistributedCondition{conditionKey='" + conditionKey + "',waiters=" + waiters.count(conditionKey) + "}";
+    }
+
+}
@@ -0,0 +1,388 @@
+package com.dongboy.lock;
+
+import com.dongboy.exception.DistributeLockException;
+import com.dongboy.exception.DistributedLockResponseCode;
+import com.dongboy.jfr.LockAcquireEvent;
+import com.dongboy.jfr.LockEvents;
+import com.dongboy.jfr.LockReleaseEvent;
+import com.dongboy.service.DistributedLockService;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 层级锁
+ * 路径以"/"分隔，如 "tenant:1/order:123"，锁定一个节点时在其所有祖先节点上加对应的意向模式(IS/IX)，再在该节点上加S/X
+ * 因此锁定 "tenant:1"(X) 与锁定 "tenant:1/order:123"(X) 互斥，只需访问路径上的几个key，而不用枚举所有子节点
+ * 层级锁只与层级锁互斥，与同名key的DistributedReentrantLock互不感知
+ * S/IS模式下本节点的多个线程可以同时持有，各自可重入
+ * 同一线程在同一层上的同一模式只登记一次并在本地计数(如同时持有 "tenant:1/order:1" 与 "tenant:1/order:2" 时共用 "tenant:1" 上的IX)，
+ * 计数归零时才删除该登记
+ *
+ * @Author dongboy
+ * @what time    2026/10/20 19:20
+ */
+@Slf4j
+public class DistributedHierarchicalLock extends DistributedBaseLock {
+
+    public static final String PATH_SEPARATOR = "/";
+
+    // 每个DistributedLockService(即每个节点)各自的锁对象池
+    private static final Map<DistributedLockService, Map<String, DistributedHierarchicalLock>> LOCK_POOL = new ConcurrentHashMap<>();
+
+    // 每个节点上 (层key,持有者,模式) -> 后端登记，被该持有者的多个层级锁共用
+    private static final Map<DistributedLockService, Map<String, Registration>> REGISTRATIONS = new ConcurrentHashMap<>();
+
+    @Getter
+    private final String path;
+
+    @Getter
+    private final LockMode mode;
+
+    // 从根节点到目标节点各层的后端key
+    private final List<String> nodeKeys;
+
+    // 本节点上持有该锁的线程
+    private final Map<Thread, Hold> holds = new ConcurrentHashMap<>();
+
+    private static class Hold {
+
+        private int depth = 1;
+
+        private final boolean autoUpdate;
+
+        private final long lockExpireTimeoutMills;
+
+        private final long acquiredAtNanos = System.nanoTime();
+
+        private volatile boolean expired;
+
+        private Hold(boolean autoUpdate, long lockExpireTimeoutMills) {
+            this.autoUpdate = autoUpdate;
+            this.lockExpireTimeoutMills = lockExpireTimeoutMills;
+        }
+
+        private boolean isExpired() {
+            return expired || (!autoUpdate && System.nanoTime() - acquiredAtNanos > TimeUnit.MILLISECONDS.toNanos(lockExpireTimeoutMills));
+        }
+
+    }
+
+    private static class Registration {
+
+        // 引用该登记的持有次数，同一持有者的引用都来自同一线程(或其死亡后的清理线程)
+        private int count;
+
+        // 本地记录的登记过期时间，新的持有需要更长的有效期时才向后端续期
+        private volatile long expireAtMills;
+
+    }
+
+    private DistributedHierarchicalLock(String path, LockMode mode, DistributedLockService lockService) {
+        super(path + "@" + mode, lockService);
+        this.path = path;
+        this.mode = mode;
+        String[] segments = path.split(PATH_SEPARATOR);
+        List<String> keys = new ArrayList<>(segments.length);
+        StringBuilder node = new StringBuilder(path.length());
+        for (String segment : segments) {
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("Invalid hierarchical lock path:" + path);
+            }
+            if (node.length() > 0) {
+                node.append(PATH_SEPARATOR);
+            }
+            node.append(segment);
+            keys.add(lockService.getKeyCodec().encode(node.toString()));
+        }
+        this.nodeKeys = Collections.unmodifiableList(keys);
+    }
+
+    public static DistributedHierarchicalLock get(String path, LockMode mode, DistributedLockService lockService) {
+        String poolKey = path + "@" + mode;
+        return LOCK_POOL.computeIfAbsent(lockService, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(poolKey, k -> new DistributedHierarchicalLock(path, mode, lockService));
+    }
+
+    private LockMode modeAt(int level) {
+        return level == nodeKeys.size() - 1 ? mode : mode.intention();
+    }
+
+    private Map<String, Registration> registrations() {
+        return REGISTRATIONS.computeIfAbsent(lockService, k -> new ConcurrentHashMap<>());
+    }
+
+    private String registrationId(int level, String holderId) {
+        return nodeKeys.get(level) + '\u0000' + holderId + '\u0000' + modeAt(level);
+    }
+
+    @Override
+    public void lock(Long waitTimeout, Long lockTime) {
+        LockAcquireEvent event = LockEvents.beginAcquire();
+        long waitDeadline = isPositive(waitTimeout) ? System.currentTimeMillis() + waitTimeout : -1;
+        int spinCount = 0;
+        // 自旋
+        while (!acquire(lockTime)) {
+            if (waitDeadline > 0 && waitDeadline < System.currentTimeMillis()) {
+                // 加锁等到超时
+                commitAcquireEvent(event, "lock", spinCount, DistributedLockResponseCode.WAIT_TIMEOUT_EXCEEDED.name());
+                throw new DistributeLockException(DistributedLockResponseCode.WAIT_TIMEOUT_EXCEEDED);
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(LOCK_SPIN_WAIT_TIME_MILLIS);
+            } catch (InterruptedException ignored) {
+                log.info("Thread interrupted when waiting lock:" + getLockKey());
+                // 设置线程中断标识
+                Thread.currentThread().interrupt();
+            }
+            spinCount++;
+        }
+        commitAcquireEvent(event, "lock", spinCount, "ACQUIRED");
+    }
+
+    @Override
+    public boolean tryLock(Long waitTimeout, Long lockTime) {
+        LockAcquireEvent event = LockEvents.beginAcquire();
+        boolean locked = acquire(lockTime);
+        commitAcquireEvent(event, "tryLock", 0, locked ? "ACQUIRED" : "FAILED");
+        return locked;
+    }
+
+    @Override
+    public boolean probeLock(Long lockTime) {
+        LockAcquireEvent event = LockEvents.beginAcquire();
+        boolean locked = acquire(lockTime);
+        if (locked) {
+            commitAcquireEvent(event, "lock", 0, "ACQUIRED");
+        }
+        return locked;
+    }
+
+    private boolean acquire(Long lockTime) {
+        Hold hold = holds.get(Thread.currentThread());
+        if (hold != null && !hold.isExpired()) {
+            hold.depth++;
+            log.info("Reentered lock:" + this);
+            return true;
+        }
+        boolean autoUpdate = !isPositive(lockTime);
+        long lockExpireTimeOut = autoUpdate ? DEFAULT_LOCK_TIMEOUT : lockTime;
+        if (!tryAcquire(lockExpireTimeOut)) {
+            return false;
+        }
+        // 与release互斥，避免其他线程释放时看到holds为空而取消刚为本线程登记的续期任务
+        synchronized (holds) {
+            holds.put(Thread.currentThread(), new Hold(autoUpdate, lockExpireTimeOut));
+            if (autoUpdate) {
+                lockService.getUpdateTaskScheduler().newTask(this);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 自根向下逐层登记，本线程已登记过的层只增加计数；任一层不兼容时撤销本次的计数，只删除本次新登记的层
+     */
+    protected boolean tryAcquire(long expireTimeout) {
+        checkAcceptingAcquisitions();
+        String holderId = getLockHolderID();
+        int acquired = 0;
+        try {
+            for (; acquired < nodeKeys.size(); acquired++) {
+                if (!register(acquired, holderId, expireTimeout)) {
+                    break;
+                }
+            }
+        } finally {
+            if (acquired < nodeKeys.size()) {
+                releaseLevels(holderId, acquired);
+            }
+        }
+        return acquired == nodeKeys.size();
+    }
+
+    private boolean register(int level, String holderId, long expireTimeout) {
+        Map<String, Registration> registrations = registrations();
+        String id = registrationId(level, holderId);
+        Registration registration = registrations.get(id);
+        long expireAtMills = System.currentTimeMillis() + expireTimeout;
+        if (registration == null || registration.expireAtMills < expireAtMills) {
+            // 新登记，或已有登记的有效期不够长；同一持有者重复登记视为续期
+            if (!lockService.getLockCache().setModeIfCompatible(nodeKeys.get(level), holderId, modeAt(level), expireTimeout, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            if (registration == null) {
+                registration = new Registration();
+                registrations.put(id, registration);
+            }
+            registration.expireAtMills = expireAtMills;
+        }
+        registration.count++;
+        return true;
+    }
+
+    /**
+     * 自下而上撤销前levels层的一次引用，计数归零的登记从后端删除
+     */
+    private void releaseLevels(String holderId, int levels) {
+        Map<String, Registration> registrations = registrations();
+        for (int level = levels - 1; level >= 0; level--) {
+            String id = registrationId(level, holderId);
+            Registration registration = registrations.get(id);
+            if (registration == null) {
+                continue;
+            }
+            if (--registration.count <= 0) {
+                registrations.remove(id, registration);
+                lockService.getLockCache().deleteMode(nodeKeys.get(level), holderId, modeAt(level));
+            }
+        }
+    }
+
+    @Override
+    public void unlock() {
+        LockReleaseEvent event = LockEvents.beginRelease();
+        Hold hold = holds.get(Thread.currentThread());
+        if (hold == null) {
+            if (!isLocked()) {
+                return;
+            }
+            commitReleaseEvent(event, DistributedLockResponseCode.CANNOT_UNLOCK_OTHERS.name());
+            throw new DistributeLockException(DistributedLockResponseCode.CANNOT_UNLOCK_OTHERS);
+        }
+        if (hold.isExpired()) {
+            release(hold);
+            commitReleaseEvent(event, DistributedLockResponseCode.LOCK_EXPIRED.name(), hold.acquiredAtNanos);
+            throw new DistributeLockException(DistributedLockResponseCode.LOCK_EXPIRED);
+        }
+        if (hold.depth > 1) {
+            hold.depth--;
+            log.debug("exit reentrant lock:" + this);
+            commitReleaseEvent(event, "REENTRANT_EXIT", hold.acquiredAtNanos);
+            return;
+        }
+        release(hold);
+        commitReleaseEvent(event, "RELEASED", hold.acquiredAtNanos);
+    }
+
+    private void release(Hold hold) {
+        synchronized (holds) {
+            holds.remove(Thread.currentThread(), hold);
+            if (holds.isEmpty()) {
+                lockService.getUpdateTaskScheduler().cancelTask(this);
+            }
+        }
+        // 登记按持有者删除，锁已过期时也不会误删他人的登记
+        releaseLevels(getLockHolderID(), nodeKeys.size());
+    }
+
+    /**
+     * 撤销本节点上持有线程已死亡的登记，由服务的持有者检查任务调用
+     *
+     * @return 撤销的持有数
+     */
+    public static int releaseDeadHolders(DistributedLockService lockService) {
+        int released = 0;
+        for (DistributedHierarchicalLock lock : LOCK_POOL.getOrDefault(lockService, Collections.emptyMap()).values()) {
+            for (Map.Entry<Thread, Hold> entry : lock.holds.entrySet()) {
+                Thread thread = entry.getKey();
+                if (!thread.isAlive() && lock.holds.remove(thread, entry.getValue())) {
+                    lock.releaseLevels(lock.getLockHolderID(thread), lock.nodeKeys.size());
+                    released++;
+                }
+            }
+        }
+        return released;
+    }
+
+    /**
+     * 本节点上持有线程仍存活的持有数
+     */
+    public static int countLiveHolds(DistributedLockService lockService) {
+        int count = 0;
+        for (DistributedHierarchicalLock lock : LOCK_POOL.getOrDefault(lockService, Collections.emptyMap()).values()) {
+            for (Thread thread : lock.holds.keySet()) {
+                if (thread.isAlive()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 为本节点所有自动续期的持有线程续期路径上的每一层登记
+     */
+    @Override
+    public void update() {
+        holds.forEach((thread, hold) -> {
+            if (!hold.autoUpdate || !thread.isAlive()) {
+                return;
+            }
+            String holderId = getLockHolderID(thread);
+            long expireAtMills = System.currentTimeMillis() + hold.lockExpireTimeoutMills;
+            for (int level = 0; level < nodeKeys.size(); level++) {
+                lockService.getLockCache().expireMode(nodeKeys.get(level), holderId, modeAt(level), hold.lockExpireTimeoutMills, TimeUnit.MILLISECONDS);
+                Registration registration = registrations().get(registrationId(level, holderId));
+                if (registration != null && registration.expireAtMills < expireAtMills) {
+                    registration.expireAtMills = expireAtMills;
+                }
+            }
+        });
+    }
+
+    /**
+     * 优先返回仍存活的持有线程，供续期任务判断是否需要继续续期
+     */
+    @Override
+    public Thread getHoldingThread() {
+        Thread holder = null;
+        for (Thread thread : holds.keySet()) {
+            if (thread.isAlive()) {
+                return thread;
+            }
+            holder = thread;
+        }
+        return holder;
+    }
+
+    @Override
+    public boolean isHeldByThread(Thread thread) {
+        return holds.containsKey(thread);
+    }
+
+    @Override
+    protected long getHeldSinceNanos() {
+        Hold hold = holds.get(Thread.currentThread());
+        return hold == null ? 0 : hold.acquiredAtNanos;
+    }
+
+    @Override
+    public boolean isExpire() {
+        Hold hold = holds.get(Thread.currentThread());
+        return hold != null && hold.isExpired();
+    }
+
+    @Override
+    public void markExpire(Thread holdingThread) {
+        Hold hold = holds.get(holdingThread);
+        if (hold != null) {
+            hold.expired = true;
+        }
+    }
+
+    @Override
+    public void clearExpirationFlag() {
+        Hold hold = holds.get(Thread.currentThread());
+        if (hold != null && hold.isExpired()) {
+            holds.remove(Thread.currentThread(), hold);
+        }
+    }
+
+}
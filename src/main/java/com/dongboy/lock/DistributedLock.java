@@ -12,6 +12,12 @@ public interface DistributedLock {
 
     boolean tryLock(Long waitTimeout, Long lockTime);
 
+    /**
+     * 尝试一次加锁(包括重入)，只在获取成功时提交JFR加锁事件
+     * 供获取失败后还会调用lock阻塞等待的调用方先探测一次，同一次加锁不会额外记录一个失败的tryLock
+     */
+    boolean probeLock(Long lockTime);
+
     void unlock();
 
     boolean isLocked();
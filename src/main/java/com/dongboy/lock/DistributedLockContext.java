@@ -0,0 +1,222 @@
+package com.dongboy.lock;
+
+import com.dongboy.exception.DistributeLockException;
+import com.dongboy.service.DistributedLockService;
+import com.dongboy.util.LockKeyDigest;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 锁上下文：把当前线程持有的DistributedReentrantLock的持有权共享给子任务
+ * 子任务运行在其他线程上，但对这些锁而言身份就是父线程：可以重入、解锁，后端看到的持有者也是父线程
+ * 子任务新获取的其他锁仍归子任务自己的线程所有，子任务之间照常互斥
+ * <p>
+ * 捕获时在每把锁上为子任务整体多加一层重入，直到上下文被关闭且最后一个子任务结束才退出这一层，
+ * 因此父线程提前解锁也不会在子任务运行期间释放锁，自动续期也一直进行(续期要求父线程存活)
+ * <pre>
+ * try (DistributedLockContext context = DistributedLockContext.capture(lockService)) {
+ *     CompletableFuture.allOf(parts.stream()
+ *             .map(part -> context.runAsync(() -> process(part), executor))
+ *             .toArray(CompletableFuture[]::new)).join();
+ * }
+ * </pre>
+ * 子任务中不能在共享的锁上进行条件等待；DistributedMultiLock对象本身不共享，子任务可以按子锁key重入
+ *
+ * @Author dongboy
+ * @what time    2026/10/21 15:40
+ */
+@Slf4j
+public class DistributedLockContext implements AutoCloseable {
+
+    // 当前线程正在运行的子任务所属的上下文
+    private static final ThreadLocal<DistributedLockContext> CURRENT = new ThreadLocal<>();
+
+    private final DistributedLockService lockService;
+
+    // 锁key摘要 -> 持有者线程(父线程)
+    private final Map<LockKeyDigest, Thread> owners;
+
+    // 共享的锁key，最后一个子任务结束时按key退出为子任务加的一层重入
+    private final List<String> lockKeys;
+
+    // 未结束的子任务数，加上父线程未关闭上下文时的1
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private DistributedLockContext(DistributedLockService lockService, Map<LockKeyDigest, Thread> owners, List<String> lockKeys) {
+        this.lockService = lockService;
+        this.owners = owners;
+        this.lockKeys = lockKeys;
+    }
+
+    /**
+     * 捕获当前线程持有的所有锁；当前线程本身是子任务时，一并捕获从父线程继承的锁
+     */
+    public static DistributedLockContext capture(DistributedLockService lockService) {
+        Map<String, Thread> heldLocks = new HashMap<>();
+        Thread current = Thread.currentThread();
+        DistributedLockContext parent = CURRENT.get();
+        lockService.getStateTable().forEachHeld((lockKey, holdingThread) -> {
+            boolean inherited = parent != null && parent.lockService == lockService
+                    && parent.owners.get(LockKeyDigest.of(lockKey)) == holdingThread;
+            if (holdingThread == current || inherited) {
+                heldLocks.put(lockKey, holdingThread);
+            }
+        });
+        Map<LockKeyDigest, Thread> owners = new HashMap<>(heldLocks.size() * 2);
+        List<String> lockKeys = new ArrayList<>(heldLocks.size());
+        heldLocks.forEach((lockKey, holdingThread) -> {
+            LockKeyDigest digest = LockKeyDigest.of(lockKey);
+            // 为子任务整体加一层重入；捕获过程中已过期或被释放的锁不再共享
+            if (lockService.getStateTable().incrementDepth(digest, holdingThread.getId()) > 0) {
+                owners.put(digest, holdingThread);
+                lockKeys.add(lockKey);
+            }
+        });
+        return new DistributedLockContext(lockService, Collections.unmodifiableMap(owners), lockKeys);
+    }
+
+    /**
+     * 锁对象判断当前线程的身份：在共享了该锁的子任务中为父线程，否则为当前线程
+     */
+    static Thread ownerOf(DistributedLockService lockService, LockKeyDigest digest) {
+        DistributedLockContext context = CURRENT.get();
+        if (context != null && context.lockService == lockService) {
+            Thread owner = context.owners.get(digest);
+            if (owner != null) {
+                return owner;
+            }
+        }
+        return Thread.currentThread();
+    }
+
+    /**
+     * 包装为子任务，提交时计数，运行结束时减计数；包装后的任务必须被运行恰好一次，否则锁会一直持有到过期
+     */
+    public Runnable wrap(Runnable task) {
+        retain();
+        return () -> {
+            try {
+                runBound(task);
+            } finally {
+                release();
+            }
+        };
+    }
+
+    public <T> Supplier<T> wrap(Supplier<T> task) {
+        retain();
+        return () -> {
+            try {
+                return supplyBound(task);
+            } finally {
+                release();
+            }
+        };
+    }
+
+    /**
+     * 包装为可多次调用的子任务，如并行流的forEach，每次调用各自计数
+     */
+    public <T> Consumer<T> bind(Consumer<T> action) {
+        return element -> {
+            retain();
+            try {
+                runBound(() -> action.accept(element));
+            } finally {
+                release();
+            }
+        };
+    }
+
+    /**
+     * 提交到该执行器的任务都作为本上下文的子任务运行
+     */
+    public Executor executor(Executor delegate) {
+        return command -> {
+            Runnable task = wrap(command);
+            try {
+                delegate.execute(task);
+            } catch (RuntimeException | Error e) {
+                // 任务被拒绝，不会再运行
+                release();
+                throw e;
+            }
+        };
+    }
+
+    public CompletableFuture<Void> runAsync(Runnable task, Executor executor) {
+        return CompletableFuture.runAsync(task, executor(executor));
+    }
+
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> task, Executor executor) {
+        return CompletableFuture.supplyAsync(task, executor(executor));
+    }
+
+    /**
+     * 父线程不再提交子任务；子任务都已结束时立即退出为子任务加的一层重入，否则由最后一个子任务退出
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            release();
+        }
+    }
+
+    private void retain() {
+        if (references.getAndIncrement() <= 0) {
+            references.decrementAndGet();
+            throw new IllegalStateException("lock context already released");
+        }
+    }
+
+    private void release() {
+        if (references.decrementAndGet() == 0) {
+            runBound(this::exitChildHold);
+        }
+    }
+
+    private void exitChildHold() {
+        for (String lockKey : lockKeys) {
+            try {
+                DistributedReentrantLock.get(lockKey, lockService).unlock();
+            } catch (DistributeLockException e) {
+                log.warn("lock expired before child tasks finished:" + lockKey + ", code:" + e.getCode());
+            }
+        }
+    }
+
+    private void runBound(Runnable task) {
+        supplyBound(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    private <T> T supplyBound(Supplier<T> task) {
+        DistributedLockContext previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+}
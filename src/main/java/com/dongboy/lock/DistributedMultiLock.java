@@ -2,7 +2,11 @@ package com.dongboy.lock;
 
 import com.dongboy.exception.DistributeLockException;
 import com.dongboy.exception.DistributedLockResponseCode;
+import com.dongboy.jfr.LockAcquireEvent;
+import com.dongboy.jfr.LockEvents;
+import com.dongboy.jfr.LockReleaseEvent;
 import com.dongboy.service.DistributedLockService;
+import com.dongboy.util.LockKeyDigest;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
@@ -10,6 +14,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
@@ -19,31 +24,72 @@ import java.util.stream.Collectors;
 @Slf4j
 public class DistributedMultiLock extends DistributedBaseLock {
 
-    private static final Map<String, DistributedMultiLock> LOCK_POOL = new ConcurrentHashMap<>();
+    // 每个DistributedLockService(即每个节点)各自的锁对象池
+    // 以有序子锁key列表的128位摘要为身份，不再拼接全部子锁key
+    private static final Map<DistributedLockService, Map<LockKeyDigest, DistributedMultiLock>> LOCK_POOL = new ConcurrentHashMap<>();
 
     // 按照字典序升序排序
-    private final List<DistributedLock> subLocks;
+    private final List<DistributedReentrantLock> subLocks;
+
+    //持有当前锁的线程，若没有线程持有当前锁，则为null
+    private final AtomicReference<Thread> heldBy = new AtomicReference<>(null);
+
+    // 最近一次获得锁的时间(System.nanoTime)
+    private volatile long heldSinceNanos;
 
     public DistributedMultiLock(String multiLockKey, List<String> lockKeys, DistributedLockService lockService) {
-        super(multiLockKey);
+        super(multiLockKey, lockService);
         subLocks = lockKeys.stream().map(subLockKey -> DistributedReentrantLock.get(subLockKey, lockService)).collect(Collectors.toList());
     }
 
     public static DistributedMultiLock get(List<String> lockKeys, DistributedLockService lockService) {
         Collections.sort(lockKeys);
-        String multiLockKey = lockKeys.stream().collect(Collectors.joining(",", "MultiLock:[", "]"));
-        if (!LOCK_POOL.containsKey(multiLockKey)) {
-            synchronized (LOCK_POOL) {
-                if (!LOCK_POOL.containsKey(multiLockKey)) {
-                    LOCK_POOL.put(multiLockKey, new DistributedMultiLock(multiLockKey, lockKeys, lockService));
+        LockKeyDigest digest = LockKeyDigest.of(lockKeys);
+        Map<LockKeyDigest, DistributedMultiLock> lockPool = LOCK_POOL.computeIfAbsent(lockService, k -> new ConcurrentHashMap<>());
+        if (!lockPool.containsKey(digest)) {
+            synchronized (lockPool) {
+                if (!lockPool.containsKey(digest)) {
+                    lockPool.put(digest, new DistributedMultiLock("MultiLock:" + digest.encode(), lockKeys, lockService));
                 }
             }
         }
-        return LOCK_POOL.get(multiLockKey);
+        DistributedMultiLock multiLock = lockPool.get(digest);
+        if (!multiLock.hasSubLockKeys(lockKeys)) {
+            // 摘要碰撞，不进入锁池
+            log.warn("multiLock digest collision:" + digest + ", keys:" + lockKeys);
+            return new DistributedMultiLock("MultiLock:" + lockKeys, lockKeys, lockService);
+        }
+        return multiLock;
+    }
+
+    private boolean hasSubLockKeys(List<String> lockKeys) {
+        if (subLocks.size() != lockKeys.size()) {
+            return false;
+        }
+        for (int i = 0; i < subLocks.size(); i++) {
+            if (!subLocks.get(i).getLockKey().equals(lockKeys.get(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public void lock(Long waitTimeout, Long lockTime) {
+        LockAcquireEvent event = LockEvents.beginAcquire();
+        try {
+            lockSubLocks(waitTimeout, lockTime);
+        } catch (DistributeLockException e) {
+            commitAcquireEvent(event, "lock", 0, e.getCode().name());
+            throw e;
+        }
+        commitAcquireEvent(event, "lock", 0, "ACQUIRED");
+    }
+
+    private void lockSubLocks(Long waitTimeout, Long lockTime) {
+        if (Boolean.TRUE.equals(tryLockAll(lockTime))) {
+            return;
+        }
         long waitDeadline = isPositive(waitTimeout) ? System.currentTimeMillis() + waitTimeout : -1;
         long waitRemainTime;
         List<DistributedLock> acquireLocks = new ArrayList<>(subLocks.size());
@@ -64,10 +110,28 @@ public class DistributedMultiLock extends DistributedBaseLock {
             }
         }
         heldBy.set(Thread.currentThread());
+        heldSinceNanos = System.nanoTime();
     }
 
     @Override
     public boolean tryLock(Long waitTimeout, Long lockTime) {
+        LockAcquireEvent event = LockEvents.beginAcquire();
+        boolean locked;
+        try {
+            locked = tryLockSubLocks(waitTimeout, lockTime);
+        } catch (DistributeLockException e) {
+            commitAcquireEvent(event, "tryLock", 0, e.getCode().name());
+            throw e;
+        }
+        commitAcquireEvent(event, "tryLock", 0, locked ? "ACQUIRED" : "FAILED");
+        return locked;
+    }
+
+    private boolean tryLockSubLocks(Long waitTimeout, Long lockTime) {
+        Boolean batchLocked = tryLockAll(lockTime);
+        if (batchLocked != null) {
+            return batchLocked;
+        }
         long waitDeadline = isPositive(waitTimeout) ? System.currentTimeMillis() + waitTimeout : -1;
         boolean locked;
         long waitRemainTime;
@@ -80,7 +144,12 @@ public class DistributedMultiLock extends DistributedBaseLock {
                 releaseLocksIgnoreException(acquireLocks);
                 throw new DistributeLockException(DistributedLockResponseCode.WAIT_TIMEOUT_EXCEEDED);
             }
-            locked = lock.tryLock(waitRemainTime, lockTime);
+            try {
+                locked = lock.tryLock(waitRemainTime, lockTime);
+            } catch (Exception e) {
+                releaseLocksIgnoreException(acquireLocks);
+                throw e;
+            }
             if (locked) {
                 acquireLocks.add(lock);
             } else {
@@ -89,21 +158,63 @@ public class DistributedMultiLock extends DistributedBaseLock {
             }
         }
         heldBy.set(Thread.currentThread());
+        heldSinceNanos = System.nanoTime();
         return true;
     }
 
+    /**
+     * 只走批量快速路径，不逐个尝试子锁(子锁的tryLock各自会提交事件)；当前线程已持有某个子锁时返回false，由lock按字典序逐个加锁
+     */
+    @Override
+    public boolean probeLock(Long lockTime) {
+        LockAcquireEvent event = LockEvents.beginAcquire();
+        boolean locked = Boolean.TRUE.equals(tryLockAll(lockTime));
+        if (locked) {
+            commitAcquireEvent(event, "lock", 0, "ACQUIRED");
+        }
+        return locked;
+    }
+
+    /**
+     * 快速路径：当前线程未重入任何子锁时，一次批量获取全部子锁(分片缓存下每个分片一次交互)
+     * 失败时不持有任何子锁；当前线程已持有某个子锁时返回null，需按字典序逐个加锁
+     */
+    private Boolean tryLockAll(Long lockTime) {
+        for (DistributedReentrantLock lock : subLocks) {
+            if (lock.isHeldByCurrentThread()) {
+                return null;
+            }
+        }
+        boolean locked = DistributedReentrantLock.tryLockAll(subLocks, lockTime, lockService);
+        if (locked) {
+            log.debug("multiLock " + getLockKey() + " locked all sub locks in batch");
+            heldBy.set(Thread.currentThread());
+            heldSinceNanos = System.nanoTime();
+        }
+        return locked;
+    }
+
     @Override
     public void unlock() {
         if (!isLocked()) {
             return;
         }
+        LockReleaseEvent event = LockEvents.beginRelease();
         if (isHeldByCurrentThread()) {
             boolean expired = isExpire();
-            releaseSubLocks();
+            try {
+                releaseSubLocks();
+            } catch (DistributeLockException e) {
+                commitReleaseEvent(event, e.getCode().name());
+                throw e;
+            }
             if (expired) {
+                commitReleaseEvent(event, DistributedLockResponseCode.LOCK_EXPIRED.name());
                 throw new DistributeLockException(DistributedLockResponseCode.LOCK_EXPIRED);
             }
+            commitReleaseEvent(event, "RELEASED");
         } else {
+            commitReleaseEvent(event, DistributedLockResponseCode.CANNOT_UNLOCK_OTHERS.name());
             throw new DistributeLockException(DistributedLockResponseCode.CANNOT_UNLOCK_OTHERS);
         }
     }
@@ -137,6 +248,16 @@ public class DistributedMultiLock extends DistributedBaseLock {
         }
     }
 
+    @Override
+    public Thread getHoldingThread() {
+        return heldBy.get();
+    }
+
+    @Override
+    protected long getHeldSinceNanos() {
+        return heldSinceNanos;
+    }
+
     @Override
     public void update() {
         // 续期任务已经被子任务锁进行，本对象无需处理
@@ -2,12 +2,21 @@ package com.dongboy.lock;
 
 import com.dongboy.exception.DistributeLockException;
 import com.dongboy.exception.DistributedLockResponseCode;
+import com.dongboy.jfr.LockAcquireEvent;
+import com.dongboy.jfr.LockEvents;
+import com.dongboy.jfr.LockExpireEvent;
+import com.dongboy.jfr.LockReleaseEvent;
+import com.dongboy.result.DistributedLockAcquireResult;
 import com.dongboy.service.DistributedLockService;
+import com.dongboy.util.LockDeadlockDetector;
+import com.dongboy.util.LockKeyDigest;
+import com.dongboy.util.LockStateTable;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * @Author dongboy
@@ -16,59 +25,97 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class DistributedReentrantLock extends DistributedBaseLock {
 
-    private final DistributedLockService lockService;
+    // 经服务的LockKeyCodec编码后的后端key
+    @Getter
+    private final String backendKey;
 
-    private volatile boolean enableAutoUpdate;
+    // 本地状态表中的键
+    private final LockKeyDigest keyDigest;
 
-    private volatile long lockExpireTimeoutMills;
-
-    private static final Map<String, DistributedReentrantLock> LOCK_POOL = new ConcurrentHashMap<>();
-
-    private final ThreadLocal<Integer> reentrantCounter = ThreadLocal.withInitial(() -> 0);
+    // 持有者、重入层数、续期方式、过期状态都存放在服务的LockStateTable中，锁对象只是一个视图，不做池化
+    private final LockStateTable stateTable;
 
     private DistributedReentrantLock(String lockKey, DistributedLockService lockService) {
-        super(lockKey);
-        this.lockService = lockService;
+        super(lockKey, lockService);
+        this.keyDigest = LockKeyDigest.of(lockKey);
+        this.backendKey = lockService.getKeyCodec().encode(lockKey, keyDigest);
+        this.stateTable = lockService.getStateTable();
     }
 
     public static DistributedReentrantLock get(String lockKey, DistributedLockService lockService) {
-        if (!LOCK_POOL.containsKey(lockKey)) {
-            synchronized (LOCK_POOL) {
-                if (!LOCK_POOL.containsKey(lockKey)) {
-                    LOCK_POOL.put(lockKey, new DistributedReentrantLock(lockKey, lockService));
-                }
-            }
-        }
-        return LOCK_POOL.get(lockKey);
+        return new DistributedReentrantLock(lockKey, lockService);
     }
 
     @Override
     public void lock(Long waitTimeout, Long lockTime) {
+        LockAcquireEvent event = LockEvents.beginAcquire();
         long waitDeadline = isPositive(waitTimeout) ? System.currentTimeMillis() + waitTimeout : -1;
-        boolean locked = tryLock(waitTimeout, lockTime);
-        // 自旋
-        while (!locked) {
-            if (waitDeadline > 0 && waitDeadline < System.currentTimeMillis()) {
-                // 加锁等到超时
-                throw new DistributeLockException(DistributedLockResponseCode.WAIT_TIMEOUT_EXCEEDED);
-            }
+        int spinCount = 0;
+        boolean locked = acquire(lockTime);
+        LockDeadlockDetector deadlockDetector = lockService.getDeadlockDetector();
+        LockDeadlockDetector.Waiter waiter = null;
+        try {
+            // 自旋
+            while (!locked) {
+                if (waitDeadline > 0 && waitDeadline < System.currentTimeMillis()) {
+                    // 加锁等到超时
+                    commitAcquireEvent(event, "lock", spinCount, DistributedLockResponseCode.WAIT_TIMEOUT_EXCEEDED.name());
+                    throw new DistributeLockException(DistributedLockResponseCode.WAIT_TIMEOUT_EXCEEDED);
+                }
+                if (waiter == null && deadlockDetector != null) {
+                    // 登记等待，供死锁检测构建等待图
+                    waiter = deadlockDetector.beginWait(getLockHolderID(), backendKey);
+                } else if (waiter != null && waiter.isAborted()) {
+                    commitAcquireEvent(event, "lock", spinCount, DistributedLockResponseCode.DEADLOCK_VICTIM.name());
+                    throw new DistributeLockException(DistributedLockResponseCode.DEADLOCK_VICTIM);
+                }
 
-            try {
-                TimeUnit.MILLISECONDS.sleep(LOCK_SPIN_WAIT_TIME_MILLIS);
-            } catch (InterruptedException ignored) {
-                log.info("Thread interrupted when waiting lock:" + getLockKey());
-                // 设置线程中断标识
-                Thread.currentThread().interrupt();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(LOCK_SPIN_WAIT_TIME_MILLIS);
+                } catch (InterruptedException ignored) {
+                    log.info("Thread interrupted when waiting lock:" + getLockKey());
+                    // 设置线程中断标识
+                    Thread.currentThread().interrupt();
+                }
+                spinCount++;
+                locked = acquire(lockTime);
+            }
+        } finally {
+            if (waiter != null) {
+                deadlockDetector.endWait(waiter);
             }
-            locked = tryLock(waitDeadline, lockTime);
         }
+        commitAcquireEvent(event, "lock", spinCount, acquireOutcome(true));
     }
 
     @Override
     public boolean tryLock(Long waitTimeout, Long lockTime) {
-        // 如果当前线程已经获得锁，那么直接将重入数+1
-        if (isHeldByCurrentThread()) {
-            reentrantCounter.set(reentrantCounter.get() + 1);
+        LockAcquireEvent event = LockEvents.beginAcquire();
+        boolean locked = acquire(lockTime);
+        commitAcquireEvent(event, "tryLock", 0, acquireOutcome(locked));
+        return locked;
+    }
+
+    @Override
+    public boolean probeLock(Long lockTime) {
+        LockAcquireEvent event = LockEvents.beginAcquire();
+        boolean locked = acquire(lockTime);
+        if (locked) {
+            commitAcquireEvent(event, "lock", 0, acquireOutcome(true));
+        }
+        return locked;
+    }
+
+    private String acquireOutcome(boolean locked) {
+        if (!locked) {
+            return "FAILED";
+        }
+        return stateTable.getDepth(keyDigest, currentOwner().getId()) > 1 ? "REENTERED" : "ACQUIRED";
+    }
+
+    private boolean acquire(Long lockTime) {
+        // 如果当前线程(或共享了持有权的父线程)已经获得锁，那么直接将重入数+1
+        if (stateTable.incrementDepth(keyDigest, currentOwner().getId()) > 0) {
             log.info("Reentered lock:" + this);
             return true;
         }
@@ -76,85 +123,237 @@ public class DistributedReentrantLock extends DistributedBaseLock {
         long lockExpireTimeOut = autoUpdate ? DEFAULT_LOCK_TIMEOUT : lockTime;
         boolean locked = tryAcquire(lockExpireTimeOut);
         if (locked) {
-            // 当前线程获得了锁
-            heldBy.set(Thread.currentThread());
-            redisKeyExpired.put(heldBy.get(), false);
-            enableAutoUpdate = autoUpdate;
-            lockExpireTimeoutMills = lockExpireTimeOut;
-            // 设置重入计数
-            reentrantCounter.set(1);
-            if (enableAutoUpdate) {
-                // 开启自动锁续期
-                lockService.getUpdateTaskScheduler().newTask(this);
-            } else {
-                // 注册过期事件监听
-                lockService.getLockCache().registerLockExpirationEvent(
-                        getLockKey(), () -> this.markExpire(heldBy.get())
-                );
-            }
+            onAcquired(autoUpdate, lockExpireTimeOut);
         }
         return locked;
     }
 
+    /**
+     * 当前线程以同一持有者身份一次性获取多把锁，后端按分片/批量只需一次交互
+     * 只适用于当前线程未持有其中任何一把锁的情况，全部获取成功返回true，否则一把都不持有
+     */
+    static boolean tryLockAll(List<DistributedReentrantLock> locks, Long lockTime, DistributedLockService lockService) {
+        locks.get(0).checkAcceptingAcquisitions();
+        boolean autoUpdate = !locks.get(0).isPositive(lockTime);
+        long lockExpireTimeOut = autoUpdate ? DEFAULT_LOCK_TIMEOUT : lockTime;
+        List<String> lockKeys = locks.stream().map(DistributedReentrantLock::getBackendKey).collect(Collectors.toList());
+        if (lockKeys.stream().anyMatch(lockService.getContentionCache()::isHeldElsewhere)) {
+            return false;
+        }
+        List<String> conflicts = lockService.getLockCache().trySetAllIfAbsent(
+                lockKeys, locks.get(0).getLockHolderID(), lockExpireTimeOut, TimeUnit.MILLISECONDS
+        );
+        if (conflicts.isEmpty()) {
+            locks.forEach(lock -> lock.onAcquired(autoUpdate, lockExpireTimeOut));
+            return true;
+        }
+        // 批量接口带不回剩余过期时间，被占用的key按未知剩余时间短暂缓存
+        conflicts.forEach(lockKey -> lockService.getContentionCache().markHeld(lockKey, -1));
+        return false;
+    }
+
+    private void onAcquired(boolean autoUpdate, long lockExpireTimeOut) {
+        // 当前线程获得了锁，重入层数为1
+        Thread holdingThread = currentOwner();
+        stateTable.put(keyDigest, lockKey, holdingThread, autoUpdate ? LockStateTable.FLAG_AUTO_UPDATE : 0, lockExpireTimeOut);
+        stateTable.clearExpired(keyDigest, holdingThread.getId());
+        if (autoUpdate) {
+            // 开启自动锁续期
+            lockService.getUpdateTaskScheduler().newTask(this);
+        } else {
+            // 注册过期事件监听
+            lockService.getLockCache().registerLockExpirationEvent(
+                    backendKey, () -> this.markExpire(holdingThread)
+            );
+        }
+    }
+
     protected boolean tryAcquire(Long expireTimeout) {
-        return lockService.getLockCache().setIfAbsent(getLockKey(), getLockHolderID(), expireTimeout, TimeUnit.MILLISECONDS);
+        checkAcceptingAcquisitions();
+        // 本地记录该锁仍被其他节点持有，直接失败，不访问后端
+        if (lockService.getContentionCache().isHeldElsewhere(backendKey)) {
+            return false;
+        }
+        DistributedLockAcquireResult result = lockService.getLockCache().trySetIfAbsent(
+                backendKey, getLockHolderID(), expireTimeout, TimeUnit.MILLISECONDS
+        );
+        if (!result.isAcquired()) {
+            lockService.getContentionCache().markHeld(backendKey, result.getRemainingTtlMills());
+        }
+        return result.isAcquired();
     }
 
     @Override
     public void unlock() {
+        LockReleaseEvent event = LockEvents.beginRelease();
         if (isExpire()) {
-            reentrantCounter.remove();
             clearExpirationFlag();
+            commitReleaseEvent(event, DistributedLockResponseCode.LOCK_EXPIRED.name());
             throw new DistributeLockException(DistributedLockResponseCode.LOCK_EXPIRED);
         }
-        if (!isLocked()) {
+        long ownerId = stateTable.getOwnerId(keyDigest);
+        if (ownerId == 0) {
             return;
         }
-        if (isHeldByCurrentThread()) {
-            if (reentrantCounter.get() == 1) {
-                if (enableAutoUpdate) {
+        long threadId = currentOwner().getId();
+        if (ownerId == threadId) {
+            long heldSinceNanos = getHeldSinceNanos();
+            boolean autoUpdate = isAutoUpdate();
+            int depth = stateTable.decrementDepth(keyDigest, threadId);
+            if (depth == 0) {
+                if (autoUpdate) {
                     lockService.getUpdateTaskScheduler().cancelTask(this);
                 } else {
-                    lockService.getLockCache().unregisterLockExpirationEvent(getLockKey());
+                    lockService.getLockCache().unregisterLockExpirationEvent(backendKey);
                 }
-                reentrantCounter.remove();
-                heldBy.set(null);
+                stateTable.remove(keyDigest, threadId);
                 trRelease();
-            } else {
-                reentrantCounter.set(reentrantCounter.get() - 1);
+                commitReleaseEvent(event, "RELEASED", heldSinceNanos);
+            } else if (depth > 0) {
                 log.debug("exit reentrant lock:" + this);
+                commitReleaseEvent(event, "REENTRANT_EXIT");
             }
         } else {
+            commitReleaseEvent(event, DistributedLockResponseCode.CANNOT_UNLOCK_OTHERS.name());
             throw new DistributeLockException(DistributedLockResponseCode.CANNOT_UNLOCK_OTHERS);
         }
     }
 
     protected void trRelease() {
-        lockService.getLockCache().delete(getLockKey(), getLockHolderID());
+        lockService.getLockCache().delete(backendKey, getLockHolderID());
+        // 本节点其他线程加锁失败时可能缓存了竞争状态
+        lockService.getContentionCache().invalidate(backendKey);
     }
 
     @Override
     public void update() {
-        lockService.getLockCache().expire(lockKey, lockExpireTimeoutMills, TimeUnit.MILLISECONDS);
+        lockService.getLockCache().expire(backendKey, getLockExpireTimeoutMills(), TimeUnit.MILLISECONDS);
+    }
+
+    public long getLockExpireTimeoutMills() {
+        return stateTable.getTtlMills(keyDigest);
+    }
+
+    private boolean isAutoUpdate() {
+        return (stateTable.getFlags(keyDigest) & LockStateTable.FLAG_AUTO_UPDATE) != 0;
+    }
+
+    @Override
+    public Thread getHoldingThread() {
+        return stateTable.getOwner(keyDigest);
+    }
+
+    @Override
+    public boolean isHeldByThread(Thread thread) {
+        return stateTable.getOwnerId(keyDigest) == thread.getId();
+    }
+
+    @Override
+    protected long getHeldSinceNanos() {
+        return stateTable.getAcquiredAtNanos(keyDigest);
     }
 
     @Override
     public boolean isExpire() {
-        if (isHeldByCurrentThread() && enableAutoUpdate) {
+        Thread owner = currentOwner();
+        if (isHeldByThread(owner) && isAutoUpdate()) {
             return false;
         }
-        return redisKeyExpired.getOrDefault(Thread.currentThread(), false);
+        return stateTable.isExpired(keyDigest, owner.getId());
     }
 
     @Override
     public void markExpire(Thread holdingThread) {
-        redisKeyExpired.put(holdingThread, true);
-        heldBy.compareAndSet(holdingThread, null);
+        if (holdingThread == null) {
+            return;
+        }
+        LockExpireEvent event = LockEvents.expireIfEnabled();
+        if (event != null) {
+            event.lockKey = lockKey;
+            event.holdingThread = holdingThread;
+            event.holdDuration = System.nanoTime() - getHeldSinceNanos();
+            event.commit();
+        }
+        stateTable.markExpired(keyDigest, holdingThread.getId());
+        stateTable.remove(keyDigest, holdingThread.getId());
+    }
+
+    /**
+     * 锁已被服务批量释放(持有线程死亡)，只清理本地状态，不再访问后端
+     * 持有线程仍存活时标记为过期，其后续解锁会得到LOCK_EXPIRED
+     */
+    public void abandon(Thread holdingThread) {
+        if (isAutoUpdate()) {
+            lockService.getUpdateTaskScheduler().cancelTask(this);
+        } else {
+            lockService.getLockCache().unregisterLockExpirationEvent(backendKey);
+        }
+        if (holdingThread.isAlive()) {
+            markExpire(holdingThread);
+        } else {
+            stateTable.clearExpired(keyDigest, holdingThread.getId());
+            stateTable.remove(keyDigest, holdingThread.getId());
+        }
+        lockService.getContentionCache().invalidate(backendKey);
+    }
+
+    /**
+     * 获取绑定在本锁上的条件变量，同名条件在所有节点上是同一个
+     */
+    public DistributedCondition getCondition(String name) {
+        return DistributedCondition.get(this, name);
+    }
+
+    /**
+     * 条件等待前完全释放锁(不论重入了几层)，返回释放前的重入层数
+     */
+    int fullyRelease() {
+        if (currentOwner() != Thread.currentThread()) {
+            // 共享持有权的子任务释放锁会影响父线程和其他子任务
+            throw new IllegalStateException("cannot wait on condition in a child task of lock context:" + lockKey);
+        }
+        long threadId = Thread.currentThread().getId();
+        int depth = stateTable.getDepth(keyDigest, threadId);
+        stateTable.setDepth(keyDigest, threadId, 1);
+        unlock();
+        return depth;
+    }
+
+    /**
+     * 条件等待结束后以原来的加锁方式重新获得锁，并恢复重入层数
+     */
+    void reacquire(int depth, Long lockTime) {
+        lock(null, lockTime);
+        stateTable.setDepth(keyDigest, Thread.currentThread().getId(), depth);
+    }
+
+    /**
+     * 当前持有方式对应的lockTime参数，自动续期时为null
+     */
+    Long getHoldLockTime() {
+        return isAutoUpdate() ? null : getLockExpireTimeoutMills();
     }
 
     @Override
     public void clearExpirationFlag() {
-        redisKeyExpired.remove(Thread.currentThread());
+        stateTable.clearExpired(keyDigest, currentOwner().getId());
+    }
+
+    @Override
+    protected String getLockHolderID() {
+        return getLockHolderID(currentOwner());
+    }
+
+    @Override
+    public boolean isHeldByCurrentThread() {
+        return isHeldByThread(currentOwner());
+    }
+
+    /**
+     * 当前线程在共享了该锁持有权的子任务中时为父线程，否则为当前线程
+     */
+    private Thread currentOwner() {
+        return DistributedLockContext.ownerOf(lockService, keyDigest);
     }
 
 }
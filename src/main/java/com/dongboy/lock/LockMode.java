@@ -0,0 +1,43 @@
+package com.dongboy.lock;
+
+/**
+ * 层级锁的模式
+ * IS/IX为意向模式，加在目标节点的所有祖先节点上，表示其子孙节点上有S/X锁；S为共享，X为排他
+ * 兼容矩阵(同一持有者的登记互不冲突):
+ * <pre>
+ *        IS   IX   S    X
+ *   IS   Y    Y    Y    N
+ *   IX   Y    Y    N    N
+ *   S    Y    N    Y    N
+ *   X    N    N    N    N
+ * </pre>
+ *
+ * @Author dongboy
+ * @what time    2026/10/20 19:05
+ */
+public enum LockMode {
+
+    IS,
+    IX,
+    S,
+    X;
+
+    private static final boolean[][] COMPATIBLE = {
+            {true, true, true, false},
+            {true, true, false, false},
+            {true, false, true, false},
+            {false, false, false, false}
+    };
+
+    public boolean isCompatibleWith(LockMode other) {
+        return COMPATIBLE[ordinal()][other.ordinal()];
+    }
+
+    /**
+     * 以本模式锁定节点时，其祖先节点需要加的意向模式
+     */
+    public LockMode intention() {
+        return this == S || this == IS ? IS : IX;
+    }
+
+}
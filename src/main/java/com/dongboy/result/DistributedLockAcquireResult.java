@@ -0,0 +1,27 @@
+package com.dongboy.result;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * @Author dongboy
+ * @what time    2026/10/19 15:10
+ */
+@Data
+@AllArgsConstructor
+public class DistributedLockAcquireResult {
+
+    // 是否加锁成功
+    private boolean acquired;
+
+    // 加锁失败时锁的当前持有者，后端不支持时为null
+    private String owner;
+
+    // 加锁失败时锁的剩余过期时间(毫秒)，后端不支持时为-1
+    private long remainingTtlMills;
+
+    public static DistributedLockAcquireResult of(boolean acquired) {
+        return new DistributedLockAcquireResult(acquired, null, -1);
+    }
+
+}
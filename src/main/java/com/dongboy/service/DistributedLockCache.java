@@ -1,6 +1,15 @@
 package com.dongboy.service;
 
+import com.dongboy.lock.LockMode;
+import com.dongboy.result.DistributedLockAcquireResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * 分布式锁缓存接口
@@ -12,12 +21,141 @@ public interface DistributedLockCache {
 
     boolean setIfAbsent(String key, String value, long ttl, TimeUnit timeUnit);
 
+    /**
+     * 与setIfAbsent相同，加锁失败时尽量带回当前持有者和剩余过期时间，供本地缓存锁竞争状态
+     * 默认不带回任何信息
+     */
+    default DistributedLockAcquireResult trySetIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+        return DistributedLockAcquireResult.of(setIfAbsent(key, value, ttl, timeUnit));
+    }
+
     void expire(String key, long ttl, TimeUnit timeUnit);
 
+    /**
+     * 批量续期，供续期任务一次性刷新多个锁的过期时间
+     * 默认逐个调用expire，支持批量操作的实现应覆盖此方法以减少与后端的交互次数
+     */
+    default void expireAll(Collection<String> keys, long ttl, TimeUnit timeUnit) {
+        for (String key : keys) {
+            expire(key, ttl, timeUnit);
+        }
+    }
+
     void delete(String key, String value);
 
+    /**
+     * 批量释放锁，参数为 key -> 持有者标识，用于节点下线或持有线程死亡时一次性释放
+     */
+    default void deleteAll(Map<String, String> keyValues) {
+        List<DistributedLockCacheOperation> operations = new ArrayList<>(keyValues.size());
+        keyValues.forEach((key, value) -> operations.add(DistributedLockCacheOperation.delete(key, value)));
+        if (!operations.isEmpty()) {
+            executeBatch(operations);
+        }
+    }
+
+    /**
+     * 以同一持有者身份同时获取多个key，全部成功返回true；任一失败时释放本次已获取的key并返回false
+     */
+    default boolean setAllIfAbsent(List<String> keys, String value, long ttl, TimeUnit timeUnit) {
+        return trySetAllIfAbsent(keys, value, ttl, timeUnit).isEmpty();
+    }
+
+    /**
+     * 与setAllIfAbsent相同，返回被其他持有者占用的key，供本地缓存锁竞争状态；全部获取成功返回空列表
+     * 默认通过executeBatch实现，支持批量操作的后端只需一次交互(失败回滚时再多一次)
+     */
+    default List<String> trySetAllIfAbsent(List<String> keys, String value, long ttl, TimeUnit timeUnit) {
+        List<DistributedLockCacheOperation> operations = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            operations.add(DistributedLockCacheOperation.setIfAbsent(key, value, ttl, timeUnit));
+        }
+        List<Boolean> results = executeBatch(operations);
+        if (!results.contains(Boolean.FALSE)) {
+            return Collections.emptyList();
+        }
+        List<String> conflicts = new ArrayList<>();
+        List<DistributedLockCacheOperation> rollback = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            if (Boolean.TRUE.equals(results.get(i))) {
+                rollback.add(DistributedLockCacheOperation.delete(keys.get(i), value));
+            } else {
+                conflicts.add(keys.get(i));
+            }
+        }
+        if (!rollback.isEmpty()) {
+            executeBatch(rollback);
+        }
+        return conflicts;
+    }
+
+    /**
+     * 批量执行操作，按顺序返回每个操作的结果：SET_IF_ABSENT返回是否加锁成功，其余操作返回是否执行成功(后端无法区分时返回true)
+     * 默认逐个执行，支持管道或批量语句的实现应覆盖此方法，使整批操作只产生一次后端交互
+     */
+    default List<Boolean> executeBatch(List<DistributedLockCacheOperation> operations) {
+        List<Boolean> results = new ArrayList<>(operations.size());
+        for (DistributedLockCacheOperation operation : operations) {
+            switch (operation.getType()) {
+                case SET_IF_ABSENT:
+                    results.add(setIfAbsent(operation.getKey(), operation.getValue(), operation.getTtl(), operation.getTimeUnit()));
+                    break;
+                case EXPIRE:
+                    expire(operation.getKey(), operation.getTtl(), operation.getTimeUnit());
+                    results.add(true);
+                    break;
+                case DELETE:
+                    delete(operation.getKey(), operation.getValue());
+                    results.add(true);
+                    break;
+                default:
+                    throw new UnsupportedOperationException("operation type:" + operation.getType());
+            }
+        }
+        return results;
+    }
+
     void registerLockExpirationEvent(String key, Runnable eventCallback);
 
     void unregisterLockExpirationEvent(String key);
 
+    /**
+     * 订阅任意节点释放锁的通知，回调参数为被释放的key
+     * 默认后端不支持释放通知，不做任何事；此时本地记录的锁竞争状态只能等缓存时长到期
+     */
+    default void subscribeLockRelease(Consumer<String> listener) {
+    }
+
+    /**
+     * 层级锁：以指定模式登记(持有者,模式)，仅当与key上其他持有者的登记都兼容(见LockMode)时成功
+     * 每个登记独立过期；同一持有者重复登记同一模式视为续期
+     * 默认后端不支持层级锁
+     */
+    default boolean setModeIfCompatible(String key, String value, LockMode mode, long ttl, TimeUnit timeUnit) {
+        throw new UnsupportedOperationException("hierarchical lock is not supported by " + getClass().getName());
+    }
+
+    default void expireMode(String key, String value, LockMode mode, long ttl, TimeUnit timeUnit) {
+        throw new UnsupportedOperationException("hierarchical lock is not supported by " + getClass().getName());
+    }
+
+    default void deleteMode(String key, String value, LockMode mode) {
+        throw new UnsupportedOperationException("hierarchical lock is not supported by " + getClass().getName());
+    }
+
+    /**
+     * 向订阅了该频道的所有节点(包括本节点)广播消息，用于分布式条件变量的唤醒
+     * 返回后端是否支持广播，默认不支持，返回false
+     */
+    default boolean publish(String channel, String message) {
+        return false;
+    }
+
+    /**
+     * 订阅频道消息，返回后端是否支持广播；不支持时调用方需自行轮询
+     */
+    default boolean subscribe(String channel, Consumer<String> listener) {
+        return false;
+    }
+
 }
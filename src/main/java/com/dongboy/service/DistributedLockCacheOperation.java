@@ -0,0 +1,48 @@
+package com.dongboy.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式锁缓存的单个操作，用于批量提交
+ *
+ * @Author dongboy
+ * @what time    2026/10/19 11:05
+ */
+@Data
+@AllArgsConstructor
+public class DistributedLockCacheOperation {
+
+    public enum Type {
+        SET_IF_ABSENT,
+        EXPIRE,
+        DELETE
+    }
+
+    private Type type;
+
+    private String key;
+
+    // 锁持有者标识，EXPIRE操作时为null
+    private String value;
+
+    // 过期时长，DELETE操作时为0
+    private long ttl;
+
+    private TimeUnit timeUnit;
+
+    public static DistributedLockCacheOperation setIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+        return new DistributedLockCacheOperation(Type.SET_IF_ABSENT, key, value, ttl, timeUnit);
+    }
+
+    public static DistributedLockCacheOperation expire(String key, long ttl, TimeUnit timeUnit) {
+        return new DistributedLockCacheOperation(Type.EXPIRE, key, null, ttl, timeUnit);
+    }
+
+    public static DistributedLockCacheOperation delete(String key, String value) {
+        return new DistributedLockCacheOperation(Type.DELETE, key, value, 0, TimeUnit.MILLISECONDS);
+    }
+
+}
@@ -1,21 +1,38 @@
 package com.dongboy.service;
 
+import com.dongboy.lock.ConditionWaiters;
+import com.dongboy.lock.DistributedCondition;
+import com.dongboy.lock.DistributedHierarchicalLock;
 import com.dongboy.lock.DistributedLock;
 import com.dongboy.lock.DistributedMultiLock;
 import com.dongboy.lock.DistributedReentrantLock;
 import com.dongboy.request.DistributedLockItemRequest;
 import com.dongboy.request.DistributedLockItemsRequest;
 import com.dongboy.result.DistributedLockResult;
+import com.dongboy.util.LockContentionCache;
+import com.dongboy.util.LockDeadlockDetector;
+import com.dongboy.util.LockKeyCodec;
+import com.dongboy.util.LockStateTable;
 import com.dongboy.util.LockUpdateTaskScheduler;
+import com.dongboy.util.LockUpdateThread;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @Author dongboy
@@ -25,20 +42,192 @@ import java.util.UUID;
 @Service
 public class DistributedLockService {
 
+    // 进程默认的客户端ID
     private static final String CLIENT_ID = UUID.randomUUID().toString();
 
+    // 检查持有线程是否存活的周期
+    private static final long HOLDER_CHECK_INTERVAL_MILLS = 100;
+
+    // 下线时等待本节点持有者自行解锁的默认最长时间
+    private static final long DEFAULT_SHUTDOWN_WAIT_MILLS = 5000;
+
+    // 本节点的客户端ID，是锁持有者标识的前缀；同一进程中模拟多个节点时各自不同
+    @Getter
+    protected final String nodeClientId;
+
     @Getter
     @Resource
     protected DistributedLockCache lockCache;
 
     @Getter
     @Resource
-    protected LockUpdateTaskScheduler updateTaskScheduler = new LockUpdateTaskScheduler();
+    protected LockUpdateTaskScheduler updateTaskScheduler;
+
+    // 锁竞争状态的本地负缓存，热点key上的失败加锁尝试不再访问后端
+    @Getter
+    protected LockContentionCache contentionCache = new LockContentionCache();
+
+    // 锁key到后端key的编码，需在创建锁之前设置，且所有节点必须一致
+    @Getter
+    @Setter
+    protected LockKeyCodec keyCodec = LockKeyCodec.PLAIN;
+
+    // 当前线程的锁持有者标识，避免每次加解锁都拼接字符串
+    private final ThreadLocal<String> currentHolderId = ThreadLocal.withInitial(() -> newHolderId(Thread.currentThread()));
+
+    // 本节点当前持有的锁的本地状态
+    @Getter
+    protected final LockStateTable stateTable = new LockStateTable();
+
+    private ScheduledExecutorService holderWatchdog;
+
+    // 本节点上条件变量的等待者，只保留有等待者的条件
+    @Getter
+    protected final ConditionWaiters conditionWaiters = new ConditionWaiters();
+
+    // 后端是否支持广播，不支持时条件变量的等待者退化为轮询
+    @Getter
+    private volatile boolean broadcastSupported;
+
+    // 跨节点死锁检测，默认不开启；需在init之前设置
+    @Getter
+    @Setter
+    protected LockDeadlockDetector deadlockDetector;
+
+    // 下线时等待持有者自行解锁的最长时间
+    @Getter
+    @Setter
+    protected long shutdownWaitMills = DEFAULT_SHUTDOWN_WAIT_MILLS;
+
+    // 节点正在下线，不再接受新的加锁
+    @Getter
+    private volatile boolean shuttingDown;
+
+    public DistributedLockService() {
+        this.nodeClientId = CLIENT_ID;
+        // 默认的续期调度器只在无参构造时创建，显式传入调度器的节点不会多创建一个线程池
+        this.updateTaskScheduler = new LockUpdateTaskScheduler();
+    }
+
+    public DistributedLockService(String nodeClientId, DistributedLockCache lockCache, LockUpdateTaskScheduler updateTaskScheduler) {
+        this.nodeClientId = nodeClientId;
+        this.lockCache = lockCache;
+        this.updateTaskScheduler = updateTaskScheduler;
+    }
 
     public static String getClientId() {
         return CLIENT_ID;
     }
 
+    public String getHolderId(Thread thread) {
+        return thread == Thread.currentThread() ? currentHolderId.get() : newHolderId(thread);
+    }
+
+    private String newHolderId(Thread thread) {
+        return nodeClientId + ":" + thread.getId();
+    }
+
+    @PostConstruct
+    public void init() {
+        // 任意节点释放锁时使本地负缓存失效
+        lockCache.subscribeLockRelease(contentionCache::invalidate);
+        // 条件变量的唤醒消息
+        broadcastSupported = lockCache.subscribe(DistributedCondition.SIGNAL_CHANNEL, message -> DistributedCondition.deliver(this, message));
+        // 持有线程死亡后立即释放其持有的锁，而不是等到锁过期
+        holderWatchdog = Executors.newSingleThreadScheduledExecutor(LockUpdateThread::new);
+        holderWatchdog.scheduleWithFixedDelay(() -> {
+            try {
+                releaseLocksOfDeadHolders();
+            } catch (Exception e) {
+                log.error("release locks of dead holders failed", e);
+            }
+        }, HOLDER_CHECK_INTERVAL_MILLS, HOLDER_CHECK_INTERVAL_MILLS, TimeUnit.MILLISECONDS);
+        if (deadlockDetector != null) {
+            deadlockDetector.start(this);
+        }
+    }
+
+    /**
+     * 节点下线：先停止接受新的加锁(已持有锁的重入和解锁不受影响)，在限定时间内等待持有者自行解锁，
+     * 再一次性批量释放持有线程已死亡的锁，其他节点无需等待这些锁过期
+     * 持有线程仍存活的锁不会被删除，以免其他节点在持有者仍在临界区内时加锁；它们照常续期，由持有者解锁或在进程退出后过期
+     */
+    @PreDestroy
+    public void destroy() {
+        shuttingDown = true;
+        if (deadlockDetector != null) {
+            deadlockDetector.stop();
+        }
+        awaitLiveHoldsReleased();
+        if (holderWatchdog != null) {
+            holderWatchdog.shutdownNow();
+        }
+        releaseLocksOfDeadHolders();
+        int liveHolds = countLiveHolds();
+        if (liveHolds > 0) {
+            log.warn(liveHolds + " locks are still held by live threads after waiting " + shutdownWaitMills + "ms, leaving them to their holders");
+        }
+    }
+
+    private void awaitLiveHoldsReleased() {
+        long deadline = System.currentTimeMillis() + shutdownWaitMills;
+        while (countLiveHolds() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(HOLDER_CHECK_INTERVAL_MILLS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private int countLiveHolds() {
+        int[] count = {0};
+        stateTable.forEachHeld((lockKey, holdingThread) -> {
+            if (holdingThread.isAlive()) {
+                count[0]++;
+            }
+        });
+        return count[0] + DistributedHierarchicalLock.countLiveHolds(this);
+    }
+
+    protected void releaseLocksOfDeadHolders() {
+        List<DistributedReentrantLock> deadLocks = new ArrayList<>();
+        stateTable.forEachHeld((lockKey, holdingThread) -> {
+            if (!holdingThread.isAlive()) {
+                deadLocks.add(DistributedReentrantLock.get(lockKey, this));
+            }
+        });
+        if (!deadLocks.isEmpty()) {
+            log.warn("releasing " + deadLocks.size() + " locks held by dead threads");
+            releaseHeldLocks(deadLocks);
+        }
+        // 死亡线程持有的锁都已释放，清理其登记
+        stateTable.purgeDeadThreads();
+        int hierarchicalReleased = DistributedHierarchicalLock.releaseDeadHolders(this);
+        if (hierarchicalReleased > 0) {
+            log.warn("released " + hierarchicalReleased + " hierarchical locks held by dead threads");
+        }
+    }
+
+    private void releaseHeldLocks(List<DistributedReentrantLock> locks) {
+        Map<String, String> keyValues = new HashMap<>(locks.size() * 2);
+        Map<DistributedReentrantLock, Thread> holders = new HashMap<>(locks.size() * 2);
+        for (DistributedReentrantLock lock : locks) {
+            Thread holdingThread = lock.getHoldingThread();
+            if (holdingThread != null) {
+                keyValues.put(lock.getBackendKey(), lock.getLockHolderID(holdingThread));
+                holders.put(lock, holdingThread);
+            }
+        }
+        if (keyValues.isEmpty()) {
+            return;
+        }
+        lockCache.deleteAll(keyValues);
+        holders.forEach(DistributedReentrantLock::abandon);
+        log.info("released " + keyValues.size() + " held locks");
+    }
+
     public DistributedLockResult lock(DistributedLockItemRequest request) {
         String lockKey = request.getKey();
         checkLockKeyLegal(lockKey);
@@ -0,0 +1,108 @@
+package com.dongboy.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 锁竞争状态的本地负缓存
+ * 记录"某个key在T之前被其他节点持有"，在此期间的加锁尝试直接在内存中失败，不再访问后端
+ * 缓存时长取剩余过期时间与上限中的较小值，因此最多滞后上限时长才能感知到锁被释放
+ * 后端带不回剩余过期时间时按一个更短的固定时长缓存，只合并紧接着的重复尝试
+ *
+ * @Author dongboy
+ * @what time    2026/10/19 15:25
+ */
+@Slf4j
+public class LockContentionCache {
+
+    // 负缓存时长上限
+    private static final long DEFAULT_MAX_HOLD_MILLS = 50;
+
+    private static final int DEFAULT_MAX_ENTRIES = 65536;
+
+    // 剩余过期时间未知时的缓存时长
+    private static final long UNKNOWN_TTL_HOLD_MILLS = 10;
+
+    private final long maxHoldNanos;
+
+    private final int maxEntries;
+
+    // key -> 被其他节点持有的截止时间(System.nanoTime)
+    private final Map<String, Long> heldUntil = new ConcurrentHashMap<>();
+
+    // 缓存满时下一次允许整表清理的时间(System.nanoTime)，避免每次失败的加锁都扫描整张表
+    private final AtomicLong nextEvictNanos = new AtomicLong(System.nanoTime());
+
+    public LockContentionCache() {
+        this(DEFAULT_MAX_HOLD_MILLS, DEFAULT_MAX_ENTRIES);
+    }
+
+    public LockContentionCache(long maxHoldMills, int maxEntries) {
+        if (maxHoldMills < 0 || maxEntries < 1) {
+            throw new IllegalArgumentException("max hold mills:" + maxHoldMills + ",max entries:" + maxEntries);
+        }
+        this.maxHoldNanos = maxHoldMills * 1_000_000;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 记录加锁失败时后端返回的剩余过期时间，已过期(0)时不缓存，未知(负数)时按固定的短时长缓存
+     */
+    public void markHeld(String key, long remainingTtlMills) {
+        if (remainingTtlMills == 0 || maxHoldNanos == 0) {
+            return;
+        }
+        if (remainingTtlMills < 0) {
+            remainingTtlMills = UNKNOWN_TTL_HOLD_MILLS;
+        }
+        if (heldUntil.size() >= maxEntries) {
+            evictExpiredIfDue();
+            if (heldUntil.size() >= maxEntries) {
+                return;
+            }
+        }
+        long holdNanos = Math.min(remainingTtlMills * 1_000_000, maxHoldNanos);
+        heldUntil.put(key, System.nanoTime() + holdNanos);
+    }
+
+    /**
+     * @return 该key在本地记录中仍被其他节点持有的剩余时间(毫秒)，没有记录返回0
+     */
+    public long remainingHoldMills(String key) {
+        Long until = heldUntil.get(key);
+        if (until == null) {
+            return 0;
+        }
+        long remain = until - System.nanoTime();
+        if (remain <= 0) {
+            heldUntil.remove(key, until);
+            return 0;
+        }
+        return Math.max(1, remain / 1_000_000);
+    }
+
+    public boolean isHeldElsewhere(String key) {
+        return remainingHoldMills(key) > 0;
+    }
+
+    public void invalidate(String key) {
+        heldUntil.remove(key);
+    }
+
+    /**
+     * 缓存满时清理已失效的记录，每隔一段时间最多由一个线程扫描一次，
+     * 记录的缓存时长不超过上限，因此间隔取上限的一半即可让失效记录及时腾出位置
+     */
+    private void evictExpiredIfDue() {
+        long now = System.nanoTime();
+        long due = nextEvictNanos.get();
+        if (now - due < 0 || !nextEvictNanos.compareAndSet(due, now + Math.max(maxHoldNanos / 2, 1_000_000))) {
+            return;
+        }
+        heldUntil.entrySet().removeIf(entry -> entry.getValue() - now <= 0);
+    }
+
+}
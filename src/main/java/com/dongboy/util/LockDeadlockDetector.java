@@ -0,0 +1,368 @@
+package com.dongboy.util;
+
+import com.dongboy.service.DistributedLockService;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 跨节点死锁检测(等待图)
+ * 每个检测周期，本节点把等待超过阈值的线程发布到缓存的广播频道：持有者标识、正在等待的后端key、已持有的后端key
+ * 各节点汇总所有节点最近的快照构成等待图(等待者 -> 所等key的持有者)，发现环时选出一个牺牲者，由其所在节点中止它的加锁等待，
+ * 加锁方得到DEADLOCK_VICTIM，释放已持有的锁后环即解开
+ * 死锁环中的每个参与者都在等待，所以只需发布等待者持有的锁，消息量与长时间等待的线程数成正比
+ * 后端不支持广播时只能发现本节点内的死锁
+ *
+ * @Author dongboy
+ * @what time    2026/10/21 10:30
+ */
+@Slf4j
+public class LockDeadlockDetector {
+
+    public static final String EDGE_CHANNEL = "dongboy:deadlock";
+
+    private static final long DEFAULT_DETECT_INTERVAL_MILLS = 1000;
+
+    private static final long DEFAULT_WAIT_THRESHOLD_MILLS = 1000;
+
+    // 快照在这么多个检测周期内没有更新则视为该节点已没有长时间等待的线程
+    private static final int SNAPSHOT_TTL_INTERVALS = 3;
+
+    private static final String RECORD_SEPARATOR = "\n";
+
+    private static final String FIELD_SEPARATOR = "\t";
+
+    // 字段中的分隔符和转义符本身都被转义，key(默认编码下即业务key)中含有分隔符时不会破坏快照
+    private static final char ESCAPE = '\\';
+
+    @Getter
+    private final long detectIntervalMills;
+
+    @Getter
+    private final long waitThresholdMills;
+
+    private DistributedLockService lockService;
+
+    // 线程ID -> 本节点正在等待加锁的线程
+    private final Map<Long, Waiter> waiters = new ConcurrentHashMap<>();
+
+    // 节点客户端ID -> 该节点最近发布的快照
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    // 上一轮被选为牺牲者的本节点持有者，连续两轮都被选中才中止，避免不同时刻的快照拼出并不存在的环
+    private Set<String> suspectedVictims = Collections.emptySet();
+
+    // 本节点上一轮是否发布了非空快照，变为空时需再发布一次以清除其他节点上的记录
+    private boolean publishedWaiters;
+
+    private ScheduledExecutorService detectExecutor;
+
+    public LockDeadlockDetector() {
+        this(DEFAULT_DETECT_INTERVAL_MILLS, DEFAULT_WAIT_THRESHOLD_MILLS);
+    }
+
+    /**
+     * @param detectIntervalMills 检测周期
+     * @param waitThresholdMills  等待超过该时长的线程才参与检测
+     */
+    public LockDeadlockDetector(long detectIntervalMills, long waitThresholdMills) {
+        if (detectIntervalMills <= 0 || waitThresholdMills < 0) {
+            throw new IllegalArgumentException("detect interval:" + detectIntervalMills + ",wait threshold:" + waitThresholdMills);
+        }
+        this.detectIntervalMills = detectIntervalMills;
+        this.waitThresholdMills = waitThresholdMills;
+    }
+
+    /**
+     * 本节点正在等待的线程
+     */
+    public static class Waiter {
+
+        private final Thread thread;
+
+        private final String holderId;
+
+        private final String waitKey;
+
+        private final long waitSinceNanos = System.nanoTime();
+
+        private volatile boolean aborted;
+
+        private Waiter(Thread thread, String holderId, String waitKey) {
+            this.thread = thread;
+            this.holderId = holderId;
+            this.waitKey = waitKey;
+        }
+
+        public boolean isAborted() {
+            return aborted;
+        }
+
+    }
+
+    private static class Snapshot {
+
+        // 等待者 -> 等待的key
+        private final Map<String, String> waitEdges;
+
+        // key -> 持有者
+        private final Map<String, String> holdEdges;
+
+        private final long receivedAtNanos = System.nanoTime();
+
+        private Snapshot(Map<String, String> waitEdges, Map<String, String> holdEdges) {
+            this.waitEdges = waitEdges;
+            this.holdEdges = holdEdges;
+        }
+
+    }
+
+    public synchronized void start(DistributedLockService lockService) {
+        if (detectExecutor != null) {
+            return;
+        }
+        this.lockService = lockService;
+        lockService.getLockCache().subscribe(EDGE_CHANNEL, this::receive);
+        detectExecutor = Executors.newSingleThreadScheduledExecutor(LockUpdateThread::new);
+        detectExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                detect();
+            } catch (Exception e) {
+                log.error("detect lock deadlock failed", e);
+            }
+        }, detectIntervalMills, detectIntervalMills, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (detectExecutor != null) {
+            detectExecutor.shutdownNow();
+            detectExecutor = null;
+        }
+    }
+
+    /**
+     * 当前线程第一次加锁失败、开始等待时登记
+     */
+    public Waiter beginWait(String holderId, String waitKey) {
+        Thread thread = Thread.currentThread();
+        Waiter waiter = new Waiter(thread, holderId, waitKey);
+        waiters.put(thread.getId(), waiter);
+        return waiter;
+    }
+
+    public void endWait(Waiter waiter) {
+        waiters.remove(waiter.thread.getId(), waiter);
+    }
+
+    private void receive(String message) {
+        String[] records = message.split(RECORD_SEPARATOR);
+        String nodeClientId = unescape(records[0]);
+        if (nodeClientId.equals(lockService.getNodeClientId())) {
+            // 本节点的快照在检测时直接使用
+            return;
+        }
+        Map<String, String> waitEdges = new HashMap<>();
+        Map<String, String> holdEdges = new HashMap<>();
+        for (int i = 1; i < records.length; i++) {
+            String[] fields = records[i].split(FIELD_SEPARATOR);
+            if (fields.length < 2) {
+                continue;
+            }
+            String holderId = unescape(fields[0]);
+            waitEdges.put(holderId, unescape(fields[1]));
+            for (int j = 2; j < fields.length; j++) {
+                holdEdges.put(unescape(fields[j]), holderId);
+            }
+        }
+        if (waitEdges.isEmpty()) {
+            snapshots.remove(nodeClientId);
+        } else {
+            snapshots.put(nodeClientId, new Snapshot(waitEdges, holdEdges));
+        }
+    }
+
+    private void detect() {
+        Snapshot local = takeLocalSnapshot();
+        publish(local);
+        long expireNanos = TimeUnit.MILLISECONDS.toNanos(detectIntervalMills * SNAPSHOT_TTL_INTERVALS);
+        snapshots.values().removeIf(snapshot -> System.nanoTime() - snapshot.receivedAtNanos > expireNanos);
+        if (local.waitEdges.isEmpty()) {
+            suspectedVictims = Collections.emptySet();
+            return;
+        }
+        Map<String, String> waitEdges = new HashMap<>(local.waitEdges);
+        Map<String, String> holdEdges = new HashMap<>(local.holdEdges);
+        for (Snapshot snapshot : snapshots.values()) {
+            waitEdges.putAll(snapshot.waitEdges);
+            holdEdges.putAll(snapshot.holdEdges);
+        }
+        Set<String> victims = new HashSet<>();
+        for (List<String> cycle : findCycles(waitEdges, holdEdges)) {
+            String victim = chooseVictim(cycle, holdEdges);
+            if (local.waitEdges.containsKey(victim)) {
+                victims.add(victim);
+                if (suspectedVictims.contains(victim)) {
+                    abort(victim, cycle, waitEdges);
+                }
+            }
+        }
+        suspectedVictims = victims;
+    }
+
+    private Snapshot takeLocalSnapshot() {
+        long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(waitThresholdMills);
+        Map<String, String> waitEdges = new HashMap<>();
+        Map<Thread, String> waitingThreads = new HashMap<>();
+        for (Waiter waiter : waiters.values()) {
+            if (!waiter.aborted && System.nanoTime() - waiter.waitSinceNanos >= thresholdNanos) {
+                waitEdges.put(waiter.holderId, waiter.waitKey);
+                waitingThreads.put(waiter.thread, waiter.holderId);
+            }
+        }
+        Map<String, String> holdEdges = new HashMap<>();
+        if (!waitingThreads.isEmpty()) {
+            LockKeyCodec keyCodec = lockService.getKeyCodec();
+            lockService.getStateTable().forEachHeld((lockKey, holdingThread) -> {
+                String holderId = waitingThreads.get(holdingThread);
+                if (holderId != null) {
+                    holdEdges.put(keyCodec.encode(lockKey), holderId);
+                }
+            });
+        }
+        return new Snapshot(waitEdges, holdEdges);
+    }
+
+    private void publish(Snapshot local) {
+        if (local.waitEdges.isEmpty() && !publishedWaiters) {
+            return;
+        }
+        Map<String, List<String>> heldKeys = new HashMap<>();
+        local.holdEdges.forEach((key, holderId) -> heldKeys.computeIfAbsent(holderId, k -> new ArrayList<>()).add(key));
+        StringBuilder message = new StringBuilder(escape(lockService.getNodeClientId()));
+        local.waitEdges.forEach((holderId, waitKey) -> {
+            message.append(RECORD_SEPARATOR).append(escape(holderId)).append(FIELD_SEPARATOR).append(escape(waitKey));
+            for (String key : heldKeys.getOrDefault(holderId, Collections.emptyList())) {
+                message.append(FIELD_SEPARATOR).append(escape(key));
+            }
+        });
+        lockService.getLockCache().publish(EDGE_CHANNEL, message.toString());
+        publishedWaiters = !local.waitEdges.isEmpty();
+    }
+
+    private static String escape(String field) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            String replacement = c == ESCAPE ? "\\\\" : c == '\n' ? "\\n" : c == '\t' ? "\\t" : null;
+            if (replacement != null && escaped == null) {
+                escaped = new StringBuilder(field.length() + 8).append(field, 0, i);
+            }
+            if (escaped != null) {
+                if (replacement != null) {
+                    escaped.append(replacement);
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped == null ? field : escaped.toString();
+    }
+
+    private static String unescape(String field) {
+        if (field.indexOf(ESCAPE) < 0) {
+            return field;
+        }
+        StringBuilder unescaped = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == ESCAPE && i + 1 < field.length()) {
+                char next = field.charAt(++i);
+                unescaped.append(next == 'n' ? '\n' : next == 't' ? '\t' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    /**
+     * 每个等待者只等一个key，等待图中每个点至多一条出边，沿出边走即可找到所有环
+     */
+    private static List<List<String>> findCycles(Map<String, String> waitEdges, Map<String, String> holdEdges) {
+        List<List<String>> cycles = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        for (String start : waitEdges.keySet()) {
+            if (visited.contains(start)) {
+                continue;
+            }
+            LinkedHashSet<String> path = new LinkedHashSet<>();
+            String current = start;
+            while (current != null && !visited.contains(current)) {
+                visited.add(current);
+                path.add(current);
+                String waitKey = waitEdges.get(current);
+                current = waitKey == null ? null : holdEdges.get(waitKey);
+            }
+            if (current != null && path.contains(current)) {
+                // 从环的入口截取
+                List<String> cycle = new ArrayList<>();
+                boolean inCycle = false;
+                for (String holderId : path) {
+                    inCycle = inCycle || holderId.equals(current);
+                    if (inCycle) {
+                        cycle.add(holderId);
+                    }
+                }
+                cycles.add(cycle);
+            }
+        }
+        return cycles;
+    }
+
+    /**
+     * 持有锁最少的参与者回滚代价最小；各节点看到同一个环时必须选出同一个牺牲者，相同时取持有者标识最大的
+     */
+    private static String chooseVictim(List<String> cycle, Map<String, String> holdEdges) {
+        Map<String, Integer> heldCounts = new HashMap<>();
+        holdEdges.values().forEach(holderId -> heldCounts.merge(holderId, 1, Integer::sum));
+        String victim = null;
+        for (String holderId : cycle) {
+            if (victim == null) {
+                victim = holderId;
+                continue;
+            }
+            int compare = Integer.compare(heldCounts.getOrDefault(holderId, 0), heldCounts.getOrDefault(victim, 0));
+            if (compare < 0 || (compare == 0 && holderId.compareTo(victim) > 0)) {
+                victim = holderId;
+            }
+        }
+        return victim;
+    }
+
+    private void abort(String victim, List<String> cycle, Map<String, String> waitEdges) {
+        for (Waiter waiter : waiters.values()) {
+            if (waiter.holderId.equals(victim)) {
+                StringBuilder description = new StringBuilder();
+                for (String holderId : cycle) {
+                    description.append(holderId).append(" -[").append(waitEdges.get(holderId)).append("]-> ");
+                }
+                description.append(cycle.get(0));
+                log.warn("lock deadlock detected: " + description + ", aborting " + victim);
+                waiter.aborted = true;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.dongboy.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 锁key到后端key的编码
+ * PLAIN：保留原key，可登记常用前缀的短别名(如 "order:detail:" -> "od:")以压缩key
+ * DIGEST：后端key为 命名空间 + 128位摘要的22字符编码，长度固定，与业务key长度无关
+ * 锁对象不做池化，每次获取锁对象时编码；DIGEST模式下后端key直接取自本地状态表用的同一个摘要，一个key只计算一次哈希
+ *
+ * @Author dongboy
+ * @what time    2026/10/20 10:05
+ */
+public class LockKeyCodec {
+
+    public enum Mode {
+        PLAIN,
+        DIGEST
+    }
+
+    public static final LockKeyCodec PLAIN = new LockKeyCodec(Mode.PLAIN, "", new LinkedHashMap<>());
+
+    private final Mode mode;
+
+    // DIGEST模式下后端key的前缀，便于在后端按命名空间区分
+    private final String namespace;
+
+    // 前缀 -> 别名，按前缀长度降序，优先匹配最长前缀
+    private final List<Map.Entry<String, String>> prefixAliases;
+
+    public LockKeyCodec(Mode mode, String namespace, Map<String, String> prefixAliases) {
+        this.mode = mode;
+        this.namespace = namespace == null ? "" : namespace;
+        this.prefixAliases = new ArrayList<>(prefixAliases.entrySet());
+        this.prefixAliases.sort(Comparator.comparingInt((Map.Entry<String, String> e) -> e.getKey().length()).reversed());
+    }
+
+    public static LockKeyCodec digest(String namespace) {
+        return new LockKeyCodec(Mode.DIGEST, namespace, new LinkedHashMap<>());
+    }
+
+    public static LockKeyCodec prefixCompressed(Map<String, String> prefixAliases) {
+        return new LockKeyCodec(Mode.PLAIN, "", prefixAliases);
+    }
+
+    public String encode(String lockKey) {
+        return encode(lockKey, mode == Mode.DIGEST ? LockKeyDigest.of(lockKey) : null);
+    }
+
+    /**
+     * 调用方已算出该key的摘要时使用，DIGEST模式下不再重复计算；PLAIN模式忽略digest
+     */
+    public String encode(String lockKey, LockKeyDigest digest) {
+        if (mode == Mode.DIGEST) {
+            return namespace + digest.encode();
+        }
+        for (Map.Entry<String, String> alias : prefixAliases) {
+            if (lockKey.startsWith(alias.getKey())) {
+                return alias.getValue() + lockKey.substring(alias.getKey().length());
+            }
+        }
+        return lockKey;
+    }
+
+}
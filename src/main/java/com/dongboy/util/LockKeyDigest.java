@@ -0,0 +1,188 @@
+package com.dongboy.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 锁key的128位摘要(MurmurHash3 x64 128)，用作定长的后端key以及多重锁的身份标识
+ * 非加密哈希，只用于缩短key和本地查找，不能抵御刻意构造的碰撞
+ *
+ * @Author dongboy
+ * @what time    2026/10/20 09:40
+ */
+public final class LockKeyDigest {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final long high;
+
+    private final long low;
+
+    LockKeyDigest(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public static LockKeyDigest of(String key) {
+        return of(key.getBytes(StandardCharsets.UTF_8), 0, 0);
+    }
+
+    /**
+     * 有序key列表的摘要，逐个key以前一个摘要为种子链式计算，不需要拼接字符串
+     */
+    public static LockKeyDigest of(List<String> keys) {
+        long h1 = 0;
+        long h2 = keys.size();
+        for (String key : keys) {
+            LockKeyDigest digest = of(key.getBytes(StandardCharsets.UTF_8), h1, h2);
+            h1 = digest.high;
+            h2 = digest.low;
+        }
+        return new LockKeyDigest(h1, h2);
+    }
+
+    // 两个种子相同时与标准MurmurHash3_x64_128(seed)一致，链式计算时分别以上一个摘要的两半为种子
+    // 尾部字节的处理依次贯穿各case，是MurmurHash3的标准写法
+    @SuppressWarnings("fallthrough")
+    static LockKeyDigest of(byte[] data, long seed1, long seed2) {
+        long h1 = seed1;
+        long h2 = seed2;
+        int length = data.length;
+        int blocks = length / 16;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = getLong(data, i * 16);
+            long k2 = getLong(data, i * 16 + 8);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        long k1 = 0;
+        long k2 = 0;
+        int tail = blocks * 16;
+        switch (length & 15) {
+            case 15:
+                k2 ^= (long) (data[tail + 14] & 0xff) << 48;
+            case 14:
+                k2 ^= (long) (data[tail + 13] & 0xff) << 40;
+            case 13:
+                k2 ^= (long) (data[tail + 12] & 0xff) << 32;
+            case 12:
+                k2 ^= (long) (data[tail + 11] & 0xff) << 24;
+            case 11:
+                k2 ^= (long) (data[tail + 10] & 0xff) << 16;
+            case 10:
+                k2 ^= (long) (data[tail + 9] & 0xff) << 8;
+            case 9:
+                k2 ^= data[tail + 8] & 0xff;
+                h2 ^= mixK2(k2);
+            case 8:
+                k1 ^= (long) (data[tail + 7] & 0xff) << 56;
+            case 7:
+                k1 ^= (long) (data[tail + 6] & 0xff) << 48;
+            case 6:
+                k1 ^= (long) (data[tail + 5] & 0xff) << 40;
+            case 5:
+                k1 ^= (long) (data[tail + 4] & 0xff) << 32;
+            case 4:
+                k1 ^= (long) (data[tail + 3] & 0xff) << 24;
+            case 3:
+                k1 ^= (long) (data[tail + 2] & 0xff) << 16;
+            case 2:
+                k1 ^= (long) (data[tail + 1] & 0xff) << 8;
+            case 1:
+                k1 ^= data[tail] & 0xff;
+                h1 ^= mixK1(k1);
+            default:
+                break;
+        }
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        return new LockKeyDigest(h1, h2);
+    }
+
+    private static long getLong(byte[] data, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (data[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * 22个字符的URL安全Base64编码
+     */
+    public String encode() {
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (high >>> (56 - i * 8));
+            bytes[i + 8] = (byte) (low >>> (56 - i * 8));
+        }
+        return ENCODER.encodeToString(bytes);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof LockKeyDigest)) {
+            return false;
+        }
+        LockKeyDigest that = (LockKeyDigest) obj;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+
+}
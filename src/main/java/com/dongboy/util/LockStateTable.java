@@ -0,0 +1,413 @@
+package com.dongboy.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * 本节点已持有锁的本地状态表
+ * 以锁key的128位摘要为键，开放寻址(线性探测，删除时后移)，持有者线程ID、重入层数、租约时长、加锁时间和状态位存放在按分段划分的基本类型数组中，
+ * 锁释放后槽位立即回收；锁对象只是表上的视图，不再为每个key常驻对象、ThreadLocal和Map
+ * 持有者线程对象按线程(而不是按key)登记；已过期但尚未被持有者感知的记录很少，单独存放
+ *
+ * @Author dongboy
+ * @what time    2026/10/20 16:20
+ */
+public class LockStateTable {
+
+    // 自动续期
+    public static final byte FLAG_AUTO_UPDATE = 1;
+
+    private static final int DEFAULT_SEGMENTS = 64;
+
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    private final Segment[] segments;
+
+    // 线程ID -> 线程，持有者以线程ID记录在表中
+    private final Map<Long, Thread> ownerThreads = new ConcurrentHashMap<>();
+
+    // 锁对某线程已过期、该线程还未解锁感知的记录
+    private final Set<ExpiredHold> expiredHolds = ConcurrentHashMap.newKeySet();
+
+    public LockStateTable() {
+        this(DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * @param segments 分段数，向上取整为2的幂，每个分段独立加锁
+     */
+    public LockStateTable(int segments) {
+        if (segments < 1) {
+            throw new IllegalArgumentException("segments:" + segments);
+        }
+        int count = Integer.highestOneBit(segments - 1 > 0 ? (segments - 1) << 1 : 1);
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment();
+        }
+    }
+
+    private Segment segmentOf(LockKeyDigest digest) {
+        return segments[(int) digest.getLow() & (segments.length - 1)];
+    }
+
+    /**
+     * 记录当前线程获得了锁，重入层数为1；已有记录时覆盖(原持有者的租约已在后端过期)
+     */
+    public void put(LockKeyDigest digest, String lockKey, Thread owner, byte flags, long ttlMills) {
+        ownerThreads.putIfAbsent(owner.getId(), owner);
+        Segment segment = segmentOf(digest);
+        synchronized (segment) {
+            int index = segment.indexOf(digest.getHigh(), digest.getLow());
+            if (index < 0) {
+                index = segment.insert(~index, digest.getHigh(), digest.getLow());
+            }
+            segment.lockKeys[index] = lockKey;
+            segment.owners[index] = owner.getId();
+            segment.depths[index] = 1;
+            segment.flags[index] = flags;
+            segment.ttls[index] = ttlMills;
+            segment.acquiredAts[index] = System.nanoTime();
+        }
+    }
+
+    /**
+     * @return 持有者线程ID，无人持有返回0
+     */
+    public long getOwnerId(LockKeyDigest digest) {
+        Segment segment = segmentOf(digest);
+        synchronized (segment) {
+            int index = segment.indexOf(digest.getHigh(), digest.getLow());
+            return index < 0 ? 0 : segment.owners[index];
+        }
+    }
+
+    public Thread getOwner(LockKeyDigest digest) {
+        long ownerId = getOwnerId(digest);
+        return ownerId == 0 ? null : ownerThreads.get(ownerId);
+    }
+
+    /**
+     * @return 指定线程持有时的重入层数，不是该线程持有返回0
+     */
+    public int getDepth(LockKeyDigest digest, long threadId) {
+        Segment segment = segmentOf(digest);
+        synchronized (segment) {
+            int index = segment.indexOf(digest.getHigh(), digest.getLow());
+            return index < 0 || segment.owners[index] != threadId ? 0 : segment.depths[index];
+        }
+    }
+
+    /**
+     * 指定线程持有时设置重入层数，返回是否设置成功
+     */
+    public boolean setDepth(LockKeyDigest digest, long threadId, int depth) {
+        Segment segment = segmentOf(digest);
+        synchronized (segment) {
+            int index = segment.indexOf(digest.getHigh(), digest.getLow());
+            if (index < 0 || segment.owners[index] != threadId) {
+                return false;
+            }
+            segment.depths[index] = depth;
+            return true;
+        }
+    }
+
+    /**
+     * 指定线程持有时重入层数加1，返回加1后的层数；不是该线程持有或正在释放(层数为0)时返回0
+     * 共享持有权的多个线程并发重入时不会丢失计数
+     */
+    public int incrementDepth(LockKeyDigest digest, long threadId) {
+        Segment segment = segmentOf(digest);
+        synchronized (segment) {
+            int index = segment.indexOf(digest.getHigh(), digest.getLow());
+            if (index < 0 || segment.owners[index] != threadId || segment.depths[index] <= 0) {
+                return 0;
+            }
+            return ++segment.depths[index];
+        }
+    }
+
+    /**
+     * 指定线程持有时重入层数减1，返回减1后的层数，为0时由调用方释放锁并删除记录；不是该线程持有返回-1
+     */
+    public int decrementDepth(LockKeyDigest digest, long threadId) {
+        Segment segment = segmentOf(digest);
+        synchronized (segment) {
+            int index = segment.indexOf(digest.getHigh(), digest.getLow());
+            if (index < 0 || segment.owners[index] != threadId || segment.depths[index] <= 0) {
+                return -1;
+            }
+            return --segment.depths[index];
+        }
+    }
+
+    public byte getFlags(LockKeyDigest digest) {
+        Segment segment = segmentOf(digest);
+        synchronized (segment) {
+            int index = segment.indexOf(digest.getHigh(), digest.getLow());
+            return index < 0 ? 0 : segment.flags[index];
+        }
+    }
+
+    public long getTtlMills(LockKeyDigest digest) {
+        Segment segment = segmentOf(digest);
+        synchronized (segment) {
+            int index = segment.indexOf(digest.getHigh(), digest.getLow());
+            return index < 0 ? 0 : segment.ttls[index];
+        }
+    }
+
+    /**
+     * @return 获得锁时的System.nanoTime，无人持有返回0
+     */
+    public long getAcquiredAtNanos(LockKeyDigest digest) {
+        Segment segment = segmentOf(digest);
+        synchronized (segment) {
+            int index = segment.indexOf(digest.getHigh(), digest.getLow());
+            return index < 0 ? 0 : segment.acquiredAts[index];
+        }
+    }
+
+    /**
+     * 仅当锁由指定线程持有时删除记录，返回是否删除
+     */
+    public boolean remove(LockKeyDigest digest, long threadId) {
+        Segment segment = segmentOf(digest);
+        synchronized (segment) {
+            int index = segment.indexOf(digest.getHigh(), digest.getLow());
+            if (index < 0 || segment.owners[index] != threadId) {
+                return false;
+            }
+            segment.removeAt(index);
+            return true;
+        }
+    }
+
+    public void markExpired(LockKeyDigest digest, long threadId) {
+        expiredHolds.add(new ExpiredHold(digest, threadId));
+    }
+
+    public boolean isExpired(LockKeyDigest digest, long threadId) {
+        return !expiredHolds.isEmpty() && expiredHolds.contains(new ExpiredHold(digest, threadId));
+    }
+
+    public void clearExpired(LockKeyDigest digest, long threadId) {
+        if (!expiredHolds.isEmpty()) {
+            expiredHolds.remove(new ExpiredHold(digest, threadId));
+        }
+    }
+
+    /**
+     * 遍历所有被持有的锁，回调参数为 锁key -> 持有者线程；遍历的是快照，回调中可以修改本表
+     */
+    public void forEachHeld(BiConsumer<String, Thread> consumer) {
+        List<String> lockKeys = new ArrayList<>();
+        List<Long> owners = new ArrayList<>();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (int i = 0; i < segment.owners.length; i++) {
+                    if (segment.owners[i] != 0) {
+                        lockKeys.add(segment.lockKeys[i]);
+                        owners.add(segment.owners[i]);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < lockKeys.size(); i++) {
+            Thread owner = ownerThreads.get(owners.get(i));
+            if (owner != null) {
+                consumer.accept(lockKeys.get(i), owner);
+            }
+        }
+    }
+
+    /**
+     * 清理已死亡线程的登记和过期记录，应在释放了死亡线程持有的锁之后调用
+     */
+    public void purgeDeadThreads() {
+        ownerThreads.values().removeIf(thread -> !thread.isAlive());
+        expiredHolds.removeIf(hold -> !ownerThreads.containsKey(hold.threadId));
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    private static final class Segment {
+
+        private long[] highs;
+
+        private long[] lows;
+
+        // 0表示空槽位，线程ID从1开始
+        private long[] owners;
+
+        private int[] depths;
+
+        private byte[] flags;
+
+        private long[] ttls;
+
+        private long[] acquiredAts;
+
+        private String[] lockKeys;
+
+        private int size;
+
+        private Segment() {
+            allocate(INITIAL_SEGMENT_CAPACITY);
+        }
+
+        private void allocate(int capacity) {
+            highs = new long[capacity];
+            lows = new long[capacity];
+            owners = new long[capacity];
+            depths = new int[capacity];
+            flags = new byte[capacity];
+            ttls = new long[capacity];
+            acquiredAts = new long[capacity];
+            lockKeys = new String[capacity];
+        }
+
+        private static int spread(long high) {
+            return (int) (high ^ (high >>> 32));
+        }
+
+        /**
+         * @return 找到时返回槽位下标，否则返回 ~插入位置
+         */
+        private int indexOf(long high, long low) {
+            int mask = owners.length - 1;
+            int index = spread(high) & mask;
+            while (owners[index] != 0) {
+                if (highs[index] == high && lows[index] == low) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return ~index;
+        }
+
+        private int insert(int index, long high, long low) {
+            // 装载因子超过0.6时扩容
+            if ((size + 1) * 5 > owners.length * 3) {
+                resize(owners.length << 1);
+                index = ~indexOf(high, low);
+            }
+            highs[index] = high;
+            lows[index] = low;
+            size++;
+            return index;
+        }
+
+        /**
+         * 后移删除：把探测链上后续可以前移的记录填入空洞，保证查找不会因空槽位提前终止
+         */
+        private void removeAt(int index) {
+            int mask = owners.length - 1;
+            int hole = index;
+            int next = index;
+            while (true) {
+                next = (next + 1) & mask;
+                if (owners[next] == 0) {
+                    break;
+                }
+                int home = spread(highs[next]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    move(next, hole);
+                    hole = next;
+                }
+            }
+            owners[hole] = 0;
+            lockKeys[hole] = null;
+            size--;
+            // 大量短租约释放后归还内存
+            if (owners.length > INITIAL_SEGMENT_CAPACITY && size * 8 < owners.length) {
+                resize(owners.length >> 1);
+            }
+        }
+
+        private void move(int from, int to) {
+            highs[to] = highs[from];
+            lows[to] = lows[from];
+            owners[to] = owners[from];
+            depths[to] = depths[from];
+            flags[to] = flags[from];
+            ttls[to] = ttls[from];
+            acquiredAts[to] = acquiredAts[from];
+            lockKeys[to] = lockKeys[from];
+        }
+
+        private void resize(int capacity) {
+            long[] oldHighs = highs;
+            long[] oldLows = lows;
+            long[] oldOwners = owners;
+            int[] oldDepths = depths;
+            byte[] oldFlags = flags;
+            long[] oldTtls = ttls;
+            long[] oldAcquiredAts = acquiredAts;
+            String[] oldLockKeys = lockKeys;
+            allocate(capacity);
+            for (int i = 0; i < oldOwners.length; i++) {
+                if (oldOwners[i] != 0) {
+                    int index = ~indexOf(oldHighs[i], oldLows[i]);
+                    highs[index] = oldHighs[i];
+                    lows[index] = oldLows[i];
+                    owners[index] = oldOwners[i];
+                    depths[index] = oldDepths[i];
+                    flags[index] = oldFlags[i];
+                    ttls[index] = oldTtls[i];
+                    acquiredAts[index] = oldAcquiredAts[i];
+                    lockKeys[index] = oldLockKeys[i];
+                }
+            }
+        }
+
+    }
+
+    private static final class ExpiredHold {
+
+        private final long high;
+
+        private final long low;
+
+        private final long threadId;
+
+        private ExpiredHold(LockKeyDigest digest, long threadId) {
+            this.high = digest.getHigh();
+            this.low = digest.getLow();
+            this.threadId = threadId;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ExpiredHold)) {
+                return false;
+            }
+            ExpiredHold that = (ExpiredHold) obj;
+            return high == that.high && low == that.low && threadId == that.threadId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(high, low, threadId);
+        }
+
+    }
+
+}
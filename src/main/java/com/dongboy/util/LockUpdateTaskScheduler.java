@@ -1,6 +1,10 @@
 package com.dongboy.util;
 
+import com.dongboy.jfr.LockEvents;
+import com.dongboy.jfr.LockRenewEvent;
 import com.dongboy.lock.DistributedLock;
+import com.dongboy.lock.DistributedReentrantLock;
+import com.dongboy.service.DistributedLockCache;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
@@ -20,70 +24,103 @@ public class LockUpdateTaskScheduler {
 
     private static final int UPDATE_DELAY_MULLS = 5000;
 
-    private final List<Set<DistributedLock>> taskList = new ArrayList<>(NUMBER_OF_UPDATE_TASK_WORKER);
+    // JFR续期事件中最多记录的key数
+    private static final int MAX_EVENT_KEYS = 32;
 
-    private final Map<DistributedLock, Integer> taskAssignment = new ConcurrentHashMap<>();
+    // 按锁的哈希值固定分配到任务分片，不需要为每个锁记录所在分片
+    private final List<Set<DistributedLock>> taskList;
 
     private ScheduledExecutorService executorService;
 
     public LockUpdateTaskScheduler() {
-        if (NUMBER_OF_UPDATE_TASK_WORKER < 1) {
-            throw new IllegalArgumentException("update task worker number:" + NUMBER_OF_UPDATE_TASK_WORKER);
+        this(NUMBER_OF_UPDATE_TASK_WORKER, UPDATE_DELAY_MULLS);
+    }
+
+    public LockUpdateTaskScheduler(int numberOfWorkers, long updateDelayMills) {
+        if (numberOfWorkers < 1) {
+            throw new IllegalArgumentException("update task worker number:" + numberOfWorkers);
         }
+        this.taskList = new ArrayList<>(numberOfWorkers);
         // 初始化线程
-        for (int i = 0; i < NUMBER_OF_UPDATE_TASK_WORKER; i++) {
+        for (int i = 0; i < numberOfWorkers; i++) {
             taskList.add(ConcurrentHashMap.newKeySet());
         }
-        executorService = Executors.newScheduledThreadPool(NUMBER_OF_UPDATE_TASK_WORKER, LockUpdateThread::new);
+        executorService = Executors.newScheduledThreadPool(numberOfWorkers, LockUpdateThread::new);
         // 初始化锁续期任务
-        for (int i = 0; i < NUMBER_OF_UPDATE_TASK_WORKER; i++) {
+        for (int i = 0; i < numberOfWorkers; i++) {
             int finalI = i;
             executorService.scheduleAtFixedRate(() -> {
-                Set<DistributedLock> tasks = taskList.get(finalI);
-                for (DistributedLock lock : tasks) {
-                    Thread heldByThread = lock.getHoldingThread();
-                    if (heldByThread.isAlive()) {
-                        log.debug("update lock!" + lock);
-                        lock.update();
-                    } else {
-                        cancelTask(lock);
-                    }
+                try {
+                    updateLocks(taskList.get(finalI));
+                } catch (Exception e) {
+                    // 异常不能抛出，否则该分片的续期任务会被线程池永久取消
+                    log.error("update lock task failed", e);
                 }
-            }, UPDATE_DELAY_MULLS / 2, UPDATE_DELAY_MULLS, TimeUnit.MILLISECONDS);
+            }, updateDelayMills / 2, updateDelayMills, TimeUnit.MILLISECONDS);
         }
         log.info("update thread pool initialized");
     }
 
-    public void newTask(DistributedLock lock) {
-        if (taskAssignment.containsKey(lock)) {
-            return;
+    private void updateLocks(Set<DistributedLock> tasks) {
+        // 按 缓存 -> 续期时长 分组，每组只向后端发起一次批量续期
+        Map<DistributedLockCache, Map<Long, List<String>>> batches = new HashMap<>();
+        for (DistributedLock lock : tasks) {
+            Thread heldByThread = lock.getHoldingThread();
+            if (heldByThread != null && heldByThread.isAlive()) {
+                log.debug("update lock!" + lock);
+                if (lock instanceof DistributedReentrantLock) {
+                    DistributedReentrantLock reentrantLock = (DistributedReentrantLock) lock;
+                    batches.computeIfAbsent(reentrantLock.getLockService().getLockCache(), k -> new HashMap<>())
+                            .computeIfAbsent(reentrantLock.getLockExpireTimeoutMills(), k -> new ArrayList<>())
+                            .add(reentrantLock.getBackendKey());
+                } else {
+                    lock.update();
+                }
+            } else {
+                cancelTask(lock);
+            }
         }
-        //创建续期任务时尽量使任务分片平均
-        // 找到目前任务数目(非严格)最小的任务分片
-        int min = taskList.get(0).size();
-        int assigneeIndex = 0;
-        for (int i = 1; i < taskList.size(); i++) {
-            if (taskList.get(i).size() < min) {
-                assigneeIndex = i;
-                min = i;
+        batches.forEach((lockCache, keysByTtl) -> keysByTtl.forEach((ttl, keys) -> {
+            LockRenewEvent event = LockEvents.beginRenew();
+            String outcome = "FAILED";
+            try {
+                lockCache.expireAll(keys, ttl, TimeUnit.MILLISECONDS);
+                outcome = "RENEWED";
+            } finally {
+                if (event != null && event.shouldCommit()) {
+                    event.lockKeys = keys.size() <= MAX_EVENT_KEYS ? keys.toString() : keys.subList(0, MAX_EVENT_KEYS) + "...";
+                    event.keyCount = keys.size();
+                    event.ttl = ttl;
+                    event.outcome = outcome;
+                    event.commit();
+                }
             }
+        }));
+    }
+
+    private Set<DistributedLock> taskSetOf(DistributedLock lock) {
+        return taskList.get((lock.hashCode() & Integer.MAX_VALUE) % taskList.size());
+    }
+
+    public void newTask(DistributedLock lock) {
+        if (taskSetOf(lock).add(lock)) {
+            log.debug("created update task for lock:" + lock + ".");
         }
-        Set<DistributedLock> assigneeTaskList = taskList.get(assigneeIndex);
-        assigneeTaskList.add(lock);
-        taskAssignment.put(lock, assigneeIndex);
-        log.debug("created update task for lock:" + lock + ".");
     }
 
     public void cancelTask(DistributedLock lock) {
-        Integer assignIndex = taskAssignment.get(lock);
-        taskList.get(assignIndex).remove(lock);
-        taskAssignment.remove(lock);
-        log.debug("canceled update task of lock:" + lock + ".");
+        if (taskSetOf(lock).remove(lock)) {
+            log.debug("canceled update task of lock:" + lock + ".");
+        }
     }
 
     public void clearTask() {
         taskList.forEach(Set::clear);
-        taskAssignment.clear();
+    }
+
+    public void shutdown() {
+        executorService.shutdownNow();
+        clearTask();
     }
 
 }
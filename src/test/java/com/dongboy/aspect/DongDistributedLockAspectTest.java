@@ -0,0 +1,248 @@
+package com.dongboy.aspect;
+
+import com.dongboy.annotation.DongDistributedLock;
+import com.dongboy.exception.DistributeLockException;
+import com.dongboy.exception.DistributedLockResponseCode;
+import com.dongboy.loadtest.SimulatedDistributedLockCache;
+import com.dongboy.lock.DistributedReentrantLock;
+import com.dongboy.service.DistributedLockService;
+import com.dongboy.util.LockUpdateTaskScheduler;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 等待者上限只限制真正需要等待的调用，未获取到锁时的拒绝与降级
+ *
+ * @Author dongboy
+ * @what time    2026/10/23 11:20
+ */
+public class DongDistributedLockAspectTest {
+
+    private final SimulatedDistributedLockCache backend = new SimulatedDistributedLockCache(
+            SimulatedDistributedLockCache.Profile.builder().rttMicros(0).jitterMicros(0).build());
+
+    private final DistributedLockService lockService = new DistributedLockService("n1", backend.forNode("n1"), new LockUpdateTaskScheduler(1, 5000));
+
+    private Orders orders;
+
+    public static class Orders {
+
+        Orders self;
+
+        @DongDistributedLock(value = "order", maxWaiters = 0, waitTimeout = 1000)
+        public String pay() {
+            return "paid";
+        }
+
+        @DongDistributedLock(value = "order", maxWaiters = 0, waitTimeout = 1000)
+        public String payAndRefund() {
+            return self.pay() + ",refunded";
+        }
+
+        @DongDistributedLock(value = "order", maxWaiters = 0, waitTimeout = 1000, fallback = "payLater")
+        public String payOrQueue(String orderId) {
+            return "paid:" + orderId;
+        }
+
+        String payLater(String orderId, DistributeLockException e) {
+            return "queued:" + orderId + ":" + e.getCode();
+        }
+
+        @DongDistributedLock(value = "order", blockable = false)
+        public String tryPay() {
+            return "paid";
+        }
+
+        @DongDistributedLock(value = "order", blockable = false, fallback = "skip")
+        public String tryPayOrSkip() {
+            return "paid";
+        }
+
+        String skip() {
+            return "skipped";
+        }
+
+        @DongDistributedLock(value = "order", blockable = false, fallback = "noSuchMethod")
+        public String payWithMissingFallback() {
+            return "paid";
+        }
+
+        @DongDistributedLock(value = "order", blockable = false, fallback = "count")
+        public String payWithMistypedFallback() {
+            return "paid";
+        }
+
+        Integer count() {
+            return 0;
+        }
+
+    }
+
+    @Before
+    public void setUp() throws ReflectiveOperationException {
+        lockService.init();
+        DongDistributedLockAspect aspect = new DongDistributedLockAspect();
+        Field field = DongDistributedLockAspect.class.getDeclaredField("lockService");
+        field.setAccessible(true);
+        field.set(aspect, lockService);
+        Orders target = new Orders();
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        orders = factory.getProxy();
+        target.self = orders;
+    }
+
+    @After
+    public void tearDown() {
+        lockService.destroy();
+        backend.close();
+    }
+
+    @Test
+    public void freeLockIsAcquiredWithoutWaiterSlots() {
+        assertEquals("paid", orders.pay());
+    }
+
+    @Test
+    public void nestedCallOfHolderIsNotShed() {
+        assertEquals("paid,refunded", orders.payAndRefund());
+    }
+
+    /**
+     * 在另一个线程上持有order锁，直到返回的latch被触发
+     */
+    private Thread holdOrder(CountDownLatch release) throws InterruptedException {
+        CountDownLatch held = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            DistributedReentrantLock lock = DistributedReentrantLock.get("order", lockService);
+            if (lock.tryLock(null, 10_000L)) {
+                held.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+                lock.unlock();
+            }
+        });
+        holder.start();
+        assertTrue(held.await(2, TimeUnit.SECONDS));
+        return holder;
+    }
+
+    @Test
+    public void contendedCallIsShedWhenNoWaiterSlots() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = holdOrder(release);
+        try {
+            orders.pay();
+            fail("expected too many waiters");
+        } catch (DistributeLockException e) {
+            assertEquals(DistributedLockResponseCode.TOO_MANY_WAITERS, e.getCode());
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+        assertEquals("paid", orders.pay());
+    }
+
+    @Test
+    public void shedCallInvokesFallbackWithRejection() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = holdOrder(release);
+        try {
+            assertEquals("queued:o1:" + DistributedLockResponseCode.TOO_MANY_WAITERS, orders.payOrQueue("o1"));
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+        assertEquals("paid:o1", orders.payOrQueue("o1"));
+    }
+
+    @Test
+    public void nonBlockableCallFailsImmediately() throws InterruptedException {
+        assertEquals("paid", orders.tryPay());
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = holdOrder(release);
+        try {
+            orders.tryPay();
+            fail("expected lock not acquired");
+        } catch (DistributeLockException e) {
+            assertEquals(DistributedLockResponseCode.LOCK_NOT_ACQUIRED, e.getCode());
+        }
+        try {
+            assertEquals("skipped", orders.tryPayOrSkip());
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    public void unresolvableFallbackIsRejected() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = holdOrder(release);
+        try {
+            try {
+                orders.payWithMissingFallback();
+                fail("expected missing fallback");
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().contains("noSuchMethod"));
+            }
+            try {
+                orders.payWithMistypedFallback();
+                fail("expected mistyped fallback");
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().contains("count"));
+            }
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    public void shedCallRecordsNoAcquireEvent() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = holdOrder(release);
+        Recording recording = new Recording();
+        recording.enable("com.dongboy.LockAcquire").withThreshold(Duration.ZERO);
+        recording.start();
+        try {
+            orders.pay();
+            fail("expected too many waiters");
+        } catch (DistributeLockException e) {
+            assertEquals(DistributedLockResponseCode.TOO_MANY_WAITERS, e.getCode());
+        } finally {
+            recording.stop();
+            release.countDown();
+            holder.join();
+        }
+        Path file = Files.createTempFile("aspect-events", ".jfr");
+        try {
+            recording.dump(file);
+            // 探测失败不提交事件，被拒绝的调用没有进入lock
+            assertTrue(RecordingFile.readAllEvents(file).isEmpty());
+        } finally {
+            recording.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
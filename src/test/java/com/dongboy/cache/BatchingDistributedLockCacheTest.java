@@ -0,0 +1,181 @@
+package com.dongboy.cache;
+
+import com.dongboy.loadtest.SimulatedDistributedLockCache;
+import com.dongboy.result.DistributedLockAcquireResult;
+import com.dongboy.service.DistributedLockCacheOperation;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @Author dongboy
+ * @what time    2026/10/22 11:30
+ */
+public class BatchingDistributedLockCacheTest {
+
+    private final CountingCache backend = new CountingCache();
+
+    private BatchingDistributedLockCache cache;
+
+    @After
+    public void tearDown() {
+        if (cache != null) {
+            cache.close();
+        }
+        backend.close();
+    }
+
+    @Test
+    public void concurrentOperationsAreCoalesced() throws InterruptedException {
+        cache = new BatchingDistributedLockCache(backend, 2000, 64, 1);
+        int threads = 32;
+        AtomicInteger acquired = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            String key = "k" + (i % 8);
+            String value = "v" + i;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (cache.setIfAbsent(key, value, 10, TimeUnit.SECONDS)) {
+                    acquired.incrementAndGet();
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join(5000);
+        }
+        // 每个key恰好一个调用方成功
+        assertEquals(8, acquired.get());
+        assertTrue("batches:" + backend.batches.get(), backend.batches.get() < threads);
+    }
+
+    @Test
+    public void failedTrySetIfAbsentMakesNoExtraRoundTrip() {
+        cache = new BatchingDistributedLockCache(backend);
+        assertTrue(cache.trySetIfAbsent("k", "a", 10, TimeUnit.SECONDS).isAcquired());
+        DistributedLockAcquireResult result = cache.trySetIfAbsent("k", "b", 10, TimeUnit.SECONDS);
+        assertFalse(result.isAcquired());
+        assertEquals(-1, result.getRemainingTtlMills());
+        assertEquals(2, backend.batches.get());
+        assertEquals(0, backend.directAcquires.get());
+    }
+
+    @Test
+    public void flusherSurvivesShortBatchResults() throws InterruptedException {
+        backend.truncateResults = true;
+        cache = new BatchingDistributedLockCache(backend, 0, 16, 1);
+        try {
+            cache.setIfAbsent("k", "a", 10, TimeUnit.SECONDS);
+            fail("expected size mismatch");
+        } catch (IllegalStateException expected) {
+        }
+        backend.truncateResults = false;
+        // 唯一的提交线程仍在工作，失败批次中的加锁已被释放
+        assertTrue(cache.setIfAbsent("k", "b", 10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void closeCompletesEveryCaller() throws InterruptedException {
+        cache = new BatchingDistributedLockCache(backend, 200, 16, 2);
+        AtomicInteger finished = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            int id = i;
+            Thread worker = new Thread(() -> {
+                try {
+                    for (int n = 0; ; n++) {
+                        cache.setIfAbsent("k" + id + ":" + n, "v", 10, TimeUnit.SECONDS);
+                    }
+                } catch (IllegalStateException e) {
+                    finished.incrementAndGet();
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        Thread.sleep(50);
+        cache.close();
+        for (Thread worker : workers) {
+            worker.join(2000);
+        }
+        assertEquals(16, finished.get());
+    }
+
+    @Test
+    public void timedOutAcquisitionIsReleased() throws InterruptedException {
+        CountDownLatch unblock = new CountDownLatch(1);
+        backend.blockUntil = unblock;
+        cache = new BatchingDistributedLockCache(backend, 0, 16, 1, 50);
+        try {
+            cache.setIfAbsent("k", "a", 10, TimeUnit.SECONDS);
+            fail("expected timeout");
+        } catch (IllegalStateException expected) {
+        }
+        unblock.countDown();
+        // 超时后才成功的加锁被自动释放，其他持有者可以加锁
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!backend.setIfAbsent("k", "b", 10, TimeUnit.SECONDS)) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("late acquisition was not released");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static class CountingCache extends SimulatedDistributedLockCache {
+
+        private final AtomicInteger batches = new AtomicInteger();
+
+        private final AtomicInteger directAcquires = new AtomicInteger();
+
+        private volatile CountDownLatch blockUntil;
+
+        // 模拟后端返回的结果比操作少一个
+        private volatile boolean truncateResults;
+
+        private CountingCache() {
+            super(Profile.builder().rttMicros(0).jitterMicros(0).build());
+        }
+
+        @Override
+        public List<Boolean> executeBatch(List<DistributedLockCacheOperation> operations) {
+            batches.incrementAndGet();
+            CountDownLatch latch = blockUntil;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            List<Boolean> results = super.executeBatch(operations);
+            return truncateResults ? results.subList(0, results.size() - 1) : results;
+        }
+
+        @Override
+        public DistributedLockAcquireResult trySetIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+            directAcquires.incrementAndGet();
+            return super.trySetIfAbsent(key, value, ttl, timeUnit);
+        }
+
+    }
+
+}
@@ -0,0 +1,232 @@
+package com.dongboy.cache;
+
+import com.dongboy.result.DistributedLockAcquireResult;
+import com.dongboy.service.DistributedLockCacheOperation;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 两个缓存实例共用一个H2内存库，模拟两个节点
+ *
+ * @Author dongboy
+ * @what time    2026/10/22 10:10
+ */
+public class JdbcDistributedLockCacheTest {
+
+    // 测试中手动调用sweep，不依赖后台清理
+    private static final long SWEEP_INTERVAL_MILLS = 3600_000;
+
+    private JdbcDataSource dataSource;
+
+    private JdbcDistributedLockCache node1;
+
+    private JdbcDistributedLockCache node2;
+
+    @Before
+    public void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        node1 = new JdbcDistributedLockCache(dataSource, JdbcDistributedLockCache.DEFAULT_TABLE_NAME, SWEEP_INTERVAL_MILLS);
+        node2 = new JdbcDistributedLockCache(dataSource, JdbcDistributedLockCache.DEFAULT_TABLE_NAME, SWEEP_INTERVAL_MILLS);
+        node1.initTable();
+    }
+
+    @After
+    public void tearDown() {
+        node1.close();
+        node2.close();
+    }
+
+    @Test
+    public void acquireAndConflict() {
+        assertTrue(node1.setIfAbsent("k", "a", 10, TimeUnit.SECONDS));
+        assertFalse(node2.setIfAbsent("k", "b", 10, TimeUnit.SECONDS));
+        DistributedLockAcquireResult result = node2.trySetIfAbsent("k", "b", 10, TimeUnit.SECONDS);
+        assertFalse(result.isAcquired());
+        assertEquals("a", result.getOwner());
+        assertTrue(result.getRemainingTtlMills() > 0);
+    }
+
+    @Test
+    public void expiredLeaseCanBeTakenOver() throws InterruptedException {
+        assertTrue(node1.setIfAbsent("k", "a", 50, TimeUnit.MILLISECONDS));
+        Thread.sleep(80);
+        assertTrue(node2.setIfAbsent("k", "b", 10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void renewExtendsOwnLease() throws InterruptedException {
+        assertTrue(node1.setIfAbsent("k", "a", 100, TimeUnit.MILLISECONDS));
+        node1.expire("k", 10, TimeUnit.SECONDS);
+        Thread.sleep(150);
+        assertFalse(node2.setIfAbsent("k", "b", 10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void renewDoesNotExtendLeaseTakenOverByOthers() throws Exception {
+        AtomicInteger expired = new AtomicInteger();
+        assertTrue(node1.setIfAbsent("k", "a", 50, TimeUnit.MILLISECONDS));
+        node1.registerLockExpirationEvent("k", expired::incrementAndGet);
+        Thread.sleep(80);
+        assertTrue(node2.setIfAbsent("k", "b", 100, TimeUnit.MILLISECONDS));
+        List<Boolean> results = node1.executeBatch(Arrays.asList(DistributedLockCacheOperation.expire("k", 10, TimeUnit.SECONDS)));
+        assertEquals(Arrays.asList(false), results);
+        node1.expire("k", 10, TimeUnit.SECONDS);
+        // 本地租约没有被推迟，照常触发过期事件
+        node1.sweep();
+        assertEquals(1, expired.get());
+        // node2的租约没有被node1延长
+        Thread.sleep(150);
+        assertTrue(node1.setIfAbsent("k", "c", 10, TimeUnit.SECONDS));
+        assertEquals("c", owner("k"));
+    }
+
+    @Test
+    public void deleteOnlyByHolder() {
+        assertTrue(node1.setIfAbsent("k", "a", 10, TimeUnit.SECONDS));
+        node2.delete("k", "b");
+        assertFalse(node2.setIfAbsent("k", "b", 10, TimeUnit.SECONDS));
+        node1.delete("k", "a");
+        assertTrue(node2.setIfAbsent("k", "b", 10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void sweepRemovesExpiredLeasesAndFiresExpirationEvent() throws Exception {
+        AtomicInteger expired = new AtomicInteger();
+        assertTrue(node1.setIfAbsent("short", "a", 50, TimeUnit.MILLISECONDS));
+        assertTrue(node1.setIfAbsent("long", "a", 10, TimeUnit.SECONDS));
+        node1.registerLockExpirationEvent("short", expired::incrementAndGet);
+        node1.registerLockExpirationEvent("long", expired::incrementAndGet);
+        Thread.sleep(80);
+        node1.sweep();
+        assertEquals(1, expired.get());
+        assertEquals(1, rowCount());
+        assertEquals("a", owner("long"));
+    }
+
+    @Test
+    public void expirationEventNotFiredForRenewedLease() throws Exception {
+        AtomicInteger expired = new AtomicInteger();
+        assertTrue(node1.setIfAbsent("k", "a", 50, TimeUnit.MILLISECONDS));
+        node1.registerLockExpirationEvent("k", expired::incrementAndGet);
+        node1.expireAll(Arrays.asList("k"), 10, TimeUnit.SECONDS);
+        Thread.sleep(80);
+        node1.sweep();
+        assertEquals(0, expired.get());
+    }
+
+    @Test
+    public void sweepDropsLapsedLeasesWithoutExpirationEvent() throws Exception {
+        assertTrue(node1.setIfAbsent("short", "a", 50, TimeUnit.MILLISECONDS));
+        assertTrue(node1.setIfAbsent("long", "a", 10, TimeUnit.SECONDS));
+        Thread.sleep(80);
+        node1.sweep();
+        assertEquals(1, localLeaseCount(node1));
+    }
+
+    @Test
+    public void executeBatchSplitsLargeBatches() {
+        int size = 1200;
+        List<DistributedLockCacheOperation> acquires = new ArrayList<>(size);
+        List<DistributedLockCacheOperation> renewsAndDeletes = new ArrayList<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            acquires.add(DistributedLockCacheOperation.setIfAbsent("k" + i, "a", 10, TimeUnit.SECONDS));
+            renewsAndDeletes.add(DistributedLockCacheOperation.expire("k" + i, 20, TimeUnit.SECONDS));
+        }
+        for (int i = 0; i < size; i++) {
+            renewsAndDeletes.add(DistributedLockCacheOperation.delete("k" + i, "a"));
+        }
+        assertEquals(Collections.nCopies(size, true), node1.executeBatch(acquires));
+        assertEquals(Collections.nCopies(size * 2, true), node1.executeBatch(renewsAndDeletes));
+        assertEquals(0, localLeaseCount(node1));
+    }
+
+    @Test
+    public void executeBatchReturnsResultPerOperation() {
+        assertTrue(node2.setIfAbsent("held", "b", 10, TimeUnit.SECONDS));
+        List<Boolean> results = node1.executeBatch(Arrays.asList(
+                DistributedLockCacheOperation.setIfAbsent("k1", "a", 10, TimeUnit.SECONDS),
+                DistributedLockCacheOperation.setIfAbsent("held", "a", 10, TimeUnit.SECONDS),
+                DistributedLockCacheOperation.expire("k1", 20, TimeUnit.SECONDS),
+                DistributedLockCacheOperation.expire("held", 20, TimeUnit.SECONDS),
+                DistributedLockCacheOperation.setIfAbsent("k2", "a", 10, TimeUnit.SECONDS),
+                DistributedLockCacheOperation.delete("k2", "a")
+        ));
+        assertEquals(Arrays.asList(true, false, true, false, true, true), results);
+        assertEquals("a", owner("k1"));
+        assertEquals("b", owner("held"));
+        assertEquals(null, owner("k2"));
+    }
+
+    @Test
+    public void executeBatchKeepsCommittedAcquisitionsWhenOneOperationFails() {
+        // 超过lock_key列长度，单条语句出错
+        String tooLong = String.join("", Collections.nCopies(300, "x"));
+        List<Boolean> results = node1.executeBatch(Arrays.asList(
+                DistributedLockCacheOperation.setIfAbsent("k1", "a", 10, TimeUnit.SECONDS),
+                DistributedLockCacheOperation.setIfAbsent(tooLong, "a", 10, TimeUnit.SECONDS),
+                DistributedLockCacheOperation.setIfAbsent("k2", "a", 10, TimeUnit.SECONDS)
+        ));
+        assertEquals(Arrays.asList(true, false, true), results);
+        assertEquals("a", owner("k1"));
+        assertEquals("a", owner("k2"));
+    }
+
+    @Test
+    public void setAllIfAbsentRollsBackOnConflict() {
+        assertTrue(node2.setIfAbsent("k2", "b", 10, TimeUnit.SECONDS));
+        assertFalse(node1.setAllIfAbsent(Arrays.asList("k1", "k2", "k3"), "a", 10, TimeUnit.SECONDS));
+        assertEquals(null, owner("k1"));
+        assertEquals(null, owner("k3"));
+    }
+
+    private String owner(String key) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT lock_value FROM " + node1.getTableName() + " WHERE lock_key = '" + key + "'")) {
+            return resultSet.next() ? resultSet.getString(1) : null;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int localLeaseCount(JdbcDistributedLockCache cache) {
+        try {
+            Field field = JdbcDistributedLockCache.class.getDeclaredField("leases");
+            field.setAccessible(true);
+            return ((Map<?, ?>) field.get(cache)).size();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int rowCount() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + node1.getTableName())) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.dongboy.cache;
+
+import com.dongboy.loadtest.SimulatedDistributedLockCache;
+import com.dongboy.result.DistributedLockAcquireResult;
+import com.dongboy.service.DistributedLockCache;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 三个进程内模拟后端作为相互独立的缓存节点
+ *
+ * @Author dongboy
+ * @what time    2026/10/22 15:30
+ */
+public class QuorumDistributedLockCacheTest {
+
+    private final SimulatedDistributedLockCache nodeA = newNode();
+
+    private final SimulatedDistributedLockCache nodeB = newNode();
+
+    private final SimulatedDistributedLockCache nodeC = newNode();
+
+    private final QuorumDistributedLockCache cache = new QuorumDistributedLockCache(
+            Arrays.<DistributedLockCache>asList(nodeA, nodeB, nodeC), 200, 2);
+
+    private static SimulatedDistributedLockCache newNode() {
+        return new SimulatedDistributedLockCache(SimulatedDistributedLockCache.Profile.builder().rttMicros(0).jitterMicros(0).build());
+    }
+
+    /**
+     * 回滚是异步下发的，等待一段时间直到能在该节点上加锁
+     */
+    private static boolean eventuallyAcquire(DistributedLockCache node, String key) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!node.setIfAbsent(key, "x", 10, TimeUnit.SECONDS)) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    @After
+    public void tearDown() {
+        cache.close();
+        nodeA.close();
+        nodeB.close();
+        nodeC.close();
+    }
+
+    @Test
+    public void acquireSucceedsOnMajority() {
+        assertTrue(nodeC.setIfAbsent("k", "other", 10, TimeUnit.SECONDS));
+        assertTrue(cache.setIfAbsent("k", "a", 10, TimeUnit.SECONDS));
+        assertFalse(cache.setIfAbsent("k", "b", 10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void trySetIfAbsentReportsMajorityOwner() throws InterruptedException {
+        assertTrue(nodeA.setIfAbsent("k", "other", 10, TimeUnit.SECONDS));
+        assertTrue(nodeB.setIfAbsent("k", "other", 10, TimeUnit.SECONDS));
+        DistributedLockAcquireResult result = cache.trySetIfAbsent("k", "a", 10, TimeUnit.SECONDS);
+        assertFalse(result.isAcquired());
+        assertEquals("other", result.getOwner());
+        assertTrue(result.getRemainingTtlMills() > 0);
+        // 在C上加的锁已回滚
+        assertTrue(eventuallyAcquire(nodeC, "k"));
+    }
+
+    @Test
+    public void failedAcquisitionIsRolledBack() throws InterruptedException {
+        assertTrue(nodeB.setIfAbsent("k", "other", 10, TimeUnit.SECONDS));
+        assertTrue(nodeC.setIfAbsent("k", "other", 10, TimeUnit.SECONDS));
+        assertFalse(cache.setIfAbsent("k", "a", 10, TimeUnit.SECONDS));
+        // 少数派节点上已加的锁被释放
+        assertTrue(eventuallyAcquire(nodeA, "k"));
+    }
+
+    @Test
+    public void expirationFiresWhenGrantedMajorityIsLost() throws InterruptedException {
+        // 只有A、B授予租约，A上过期后锁即失去多数派
+        assertTrue(nodeC.setIfAbsent("k", "other", 10, TimeUnit.SECONDS));
+        assertTrue(cache.setIfAbsent("k", "a", 100, TimeUnit.MILLISECONDS));
+        nodeB.expire("k", 10, TimeUnit.SECONDS);
+        CountDownLatch expired = new CountDownLatch(1);
+        cache.registerLockExpirationEvent("k", expired::countDown);
+        assertTrue(expired.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void expirationNotFiredWhileMajorityHolds() throws InterruptedException {
+        assertTrue(cache.setIfAbsent("k", "a", 100, TimeUnit.MILLISECONDS));
+        nodeB.expire("k", 10, TimeUnit.SECONDS);
+        nodeC.expire("k", 10, TimeUnit.SECONDS);
+        CountDownLatch expired = new CountDownLatch(1);
+        cache.registerLockExpirationEvent("k", expired::countDown);
+        assertFalse(expired.await(300, TimeUnit.MILLISECONDS));
+        assertEquals(1, expired.getCount());
+    }
+
+    @Test
+    public void lapsedGrantsArePurged() throws InterruptedException {
+        for (int i = 0; i < 600; i++) {
+            assertTrue(cache.setIfAbsent("short:" + i, "a", 100, TimeUnit.MILLISECONDS));
+        }
+        Thread.sleep(150);
+        for (int i = 0; i < 424; i++) {
+            assertTrue(cache.setIfAbsent("long:" + i, "a", 10, TimeUnit.SECONDS));
+        }
+        // 第1024次授予时清理掉自然过期的记录
+        assertEquals(424, grantCount());
+    }
+
+    private int grantCount() {
+        try {
+            Field field = QuorumDistributedLockCache.class.getDeclaredField("grantedNodes");
+            field.setAccessible(true);
+            return ((Map<?, ?>) field.get(cache)).size();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.dongboy.cache;
+
+import com.dongboy.loadtest.SimulatedDistributedLockCache;
+import com.dongboy.service.DistributedLockCache;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 两个分片实例共用同一组分片，模拟两个节点先后调整分片
+ *
+ * @Author dongboy
+ * @what time    2026/10/22 14:20
+ */
+public class ShardedDistributedLockCacheTest {
+
+    private final SimulatedDistributedLockCache shardA = newShard();
+
+    private final SimulatedDistributedLockCache shardB = newShard();
+
+    private final SimulatedDistributedLockCache shardC = newShard();
+
+    private static SimulatedDistributedLockCache newShard() {
+        return new SimulatedDistributedLockCache(SimulatedDistributedLockCache.Profile.builder().rttMicros(0).jitterMicros(0).build());
+    }
+
+    private ShardedDistributedLockCache newNode() {
+        Map<String, DistributedLockCache> shards = new LinkedHashMap<>();
+        shards.put("a", shardA);
+        shards.put("b", shardB);
+        return new ShardedDistributedLockCache(shards);
+    }
+
+    /**
+     * 找一个加入分片c后会被重新映射的key
+     */
+    private String movedKey(ShardedDistributedLockCache before) {
+        ShardedDistributedLockCache after = newNode();
+        after.addShard("c", shardC);
+        for (int i = 0; ; i++) {
+            String key = "lock:" + i;
+            if (after.shardOf(key) != before.shardOf(key)) {
+                return key;
+            }
+        }
+    }
+
+    @Test
+    public void heldKeyStaysExclusiveDuringMigration() {
+        ShardedDistributedLockCache node1 = newNode();
+        ShardedDistributedLockCache node2 = newNode();
+        String key = movedKey(node1);
+        assertTrue(node1.setIfAbsent(key, "a", 10, TimeUnit.SECONDS));
+        node2.addShard("c", shardC);
+        assertNotSame(node1.shardOf(key), node2.shardOf(key));
+        // 新分片上没有该key，但旧分片上仍被持有
+        assertFalse(node2.setIfAbsent(key, "b", 10, TimeUnit.SECONDS));
+        assertFalse(node2.trySetIfAbsent(key, "b", 10, TimeUnit.SECONDS).isAcquired());
+        node1.delete(key, "a");
+        assertTrue(node2.setIfAbsent(key, "b", 10, TimeUnit.SECONDS));
+        // 迁移期内获取的锁在两个分片上都持有，未切换的节点同样互斥
+        assertFalse(node1.setIfAbsent(key, "a", 10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failedAcquisitionOnNewShardIsRolledBack() {
+        ShardedDistributedLockCache node1 = newNode();
+        ShardedDistributedLockCache node2 = newNode();
+        String key = movedKey(node1);
+        node2.addShard("c", shardC);
+        assertTrue(shardC.setIfAbsent(key, "other", 10, TimeUnit.SECONDS));
+        assertFalse(node2.setIfAbsent(key, "b", 10, TimeUnit.SECONDS));
+        // 旧分片上加的锁已回滚
+        assertTrue(node1.setIfAbsent(key, "a", 10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void migrationCompletesOnlyAfterOldLeasesReleased() throws InterruptedException {
+        ShardedDistributedLockCache node = newNode();
+        String key = movedKey(node);
+        assertTrue(node.setIfAbsent(key, "a", 200, TimeUnit.MILLISECONDS));
+        node.addShard("c", shardC);
+        try {
+            node.addShard("d", newShard());
+            fail("expected migration in progress");
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            node.completeMigration();
+            fail("expected lock acquired before migration");
+        } catch (IllegalStateException expected) {
+        }
+        // 迁移期内续期，此后按租约逐个跟踪
+        node.expire(key, 10, TimeUnit.SECONDS);
+        Thread.sleep(250);
+        try {
+            node.completeMigration();
+            fail("expected renewed lock acquired before migration");
+        } catch (IllegalStateException expected) {
+        }
+        node.delete(key, "a");
+        node.completeMigration();
+        assertFalse(node.isMigrating());
+        assertTrue(node.setIfAbsent(key, "a", 10, TimeUnit.SECONDS));
+        // 迁移结束后只在新分片上加锁
+        assertFalse(shardC.setIfAbsent(key, "x", 10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void leasesAreTrackedOnlyDuringMigration() throws InterruptedException {
+        ShardedDistributedLockCache node = newNode();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(node.setIfAbsent("fixed:" + i, "a", 50, TimeUnit.MILLISECONDS));
+        }
+        assertEquals(0, trackedLeases(node));
+        node.addShard("c", shardC);
+        assertTrue(node.setIfAbsent("during", "a", 50, TimeUnit.MILLISECONDS));
+        assertEquals(1, trackedLeases(node));
+        Thread.sleep(80);
+        // 自然过期的租约在批量续期时被清理
+        node.expireAll(Collections.singletonList("other"), 10, TimeUnit.SECONDS);
+        assertEquals(1, trackedLeases(node));
+        node.delete("other", "a");
+        node.completeMigration();
+        assertEquals(0, trackedLeases(node));
+    }
+
+    private static int trackedLeases(ShardedDistributedLockCache node) {
+        try {
+            Field field = ShardedDistributedLockCache.class.getDeclaredField("heldLeases");
+            field.setAccessible(true);
+            return ((Map<?, ?>) field.get(node)).size();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
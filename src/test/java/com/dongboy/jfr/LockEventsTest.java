@@ -0,0 +1,148 @@
+package com.dongboy.jfr;
+
+import com.dongboy.exception.DistributeLockException;
+import com.dongboy.exception.DistributedLockResponseCode;
+import com.dongboy.loadtest.SimulatedDistributedLockCache;
+import com.dongboy.lock.DistributedReentrantLock;
+import com.dongboy.service.DistributedLockService;
+import com.dongboy.util.LockUpdateTaskScheduler;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 录制一段加锁、重入、解锁、过期的过程，检查事件名、结果和锁key
+ *
+ * @Author dongboy
+ * @what time    2026/10/23 19:40
+ */
+public class LockEventsTest {
+
+    private final SimulatedDistributedLockCache backend = new SimulatedDistributedLockCache(
+            SimulatedDistributedLockCache.Profile.builder().rttMicros(0).jitterMicros(0).build());
+
+    private final DistributedLockService node1 = newNode("n1");
+
+    private final DistributedLockService node2 = newNode("n2");
+
+    private DistributedLockService newNode(String nodeClientId) {
+        // 续期间隔很短，录制期间能观察到续期事件
+        DistributedLockService service = new DistributedLockService(nodeClientId, backend.forNode(nodeClientId), new LockUpdateTaskScheduler(1, 40));
+        service.init();
+        return service;
+    }
+
+    @After
+    public void tearDown() {
+        node1.destroy();
+        node2.destroy();
+        backend.close();
+    }
+
+    private static Recording startRecording() {
+        Recording recording = new Recording();
+        recording.enable("com.dongboy.LockAcquire").withThreshold(Duration.ZERO);
+        recording.enable("com.dongboy.LockRelease").withThreshold(Duration.ZERO);
+        recording.enable("com.dongboy.LockRenew").withThreshold(Duration.ZERO);
+        recording.enable("com.dongboy.LockExpire");
+        recording.start();
+        return recording;
+    }
+
+    private static List<RecordedEvent> stopRecording(Recording recording) throws IOException {
+        recording.stop();
+        Path file = Files.createTempFile("lock-events", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            recording.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<String> outcomes(List<RecordedEvent> events, String eventName, String lockKey) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(eventName))
+                .filter(event -> lockKey.equals(event.getString("lockKey")))
+                .map(event -> event.getString("outcome"))
+                .collect(Collectors.toList());
+    }
+
+    private static boolean tryLockElsewhere(String lockKey, DistributedLockService node) throws InterruptedException {
+        boolean[] locked = new boolean[1];
+        Thread thread = new Thread(() -> locked[0] = DistributedReentrantLock.get(lockKey, node).tryLock(null, 10_000L));
+        thread.start();
+        thread.join();
+        return locked[0];
+    }
+
+    @Test
+    public void recordsAcquireReenterReleaseAndRenew() throws Exception {
+        Recording recording = startRecording();
+        DistributedReentrantLock lock = DistributedReentrantLock.get("jfr:k", node1);
+        assertTrue(lock.tryLock(null, null));
+        assertTrue(lock.tryLock(null, null));
+        assertFalse(tryLockElsewhere("jfr:k", node2));
+        Thread.sleep(100);
+        lock.unlock();
+        lock.unlock();
+        List<RecordedEvent> events = stopRecording(recording);
+
+        List<String> acquires = outcomes(events, "com.dongboy.LockAcquire", "jfr:k");
+        assertEquals(3, acquires.size());
+        assertTrue(acquires.containsAll(Arrays.asList("ACQUIRED", "REENTERED", "FAILED")));
+        assertEquals(Arrays.asList("REENTRANT_EXIT", "RELEASED"), outcomes(events, "com.dongboy.LockRelease", "jfr:k"));
+        List<RecordedEvent> renewals = events.stream()
+                .filter(event -> event.getEventType().getName().equals("com.dongboy.LockRenew"))
+                .collect(Collectors.toList());
+        assertFalse(renewals.isEmpty());
+        assertTrue(renewals.stream().allMatch(event -> "RENEWED".equals(event.getString("outcome"))));
+        assertTrue(renewals.stream().anyMatch(event -> event.getString("lockKeys").contains("jfr:k")));
+    }
+
+    @Test
+    public void recordsExpiryAndExpiredRelease() throws Exception {
+        Recording recording = startRecording();
+        DistributedReentrantLock lock = DistributedReentrantLock.get("jfr:expire", node1);
+        assertTrue(lock.tryLock(null, 50L));
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!lock.isExpire() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        try {
+            lock.unlock();
+            fail("expected lock expired");
+        } catch (DistributeLockException e) {
+            assertEquals(DistributedLockResponseCode.LOCK_EXPIRED, e.getCode());
+        }
+        List<RecordedEvent> events = stopRecording(recording);
+
+        assertEquals(Collections.singletonList("ACQUIRED"), outcomes(events, "com.dongboy.LockAcquire", "jfr:expire"));
+        List<RecordedEvent> expiries = events.stream()
+                .filter(event -> event.getEventType().getName().equals("com.dongboy.LockExpire"))
+                .collect(Collectors.toList());
+        assertEquals(1, expiries.size());
+        assertEquals("jfr:expire", expiries.get(0).getString("lockKey"));
+        assertTrue(expiries.get(0).getLong("holdDuration") > 0);
+        assertEquals(Collections.singletonList(DistributedLockResponseCode.LOCK_EXPIRED.name()),
+                outcomes(events, "com.dongboy.LockRelease", "jfr:expire"));
+    }
+
+}
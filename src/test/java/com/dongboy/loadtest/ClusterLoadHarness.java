@@ -0,0 +1,229 @@
+package com.dongboy.loadtest;
+
+import com.dongboy.cache.BatchingDistributedLockCache;
+import com.dongboy.exception.DistributeLockException;
+import com.dongboy.exception.DistributedLockResponseCode;
+import com.dongboy.lock.DistributedLock;
+import com.dongboy.lock.DistributedReentrantLock;
+import com.dongboy.service.DistributedLockCache;
+import com.dongboy.service.DistributedLockService;
+import com.dongboy.util.LockUpdateTaskScheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 模拟集群的宏观压测工具
+ * 在一个进程内启动多个模拟节点，每个节点有独立的DistributedLockService、LockUpdateTaskScheduler和客户端ID，
+ * 共用一个可注入时延、抖动、停顿和失败的SimulatedDistributedLockCache
+ * 输出吞吐、加锁耗时分位数、后端操作数，以及同一key被多个线程同时持有的安全性违例数
+ * <p>
+ * 用法(参数均为可选的 key=value):
+ * java -cp target/classes:target/test-classes:... com.dongboy.loadtest.ClusterLoadHarness nodes=8 threads=16 keys=32 seconds=30
+ *
+ * @Author dongboy
+ * @what time    2026/10/19 17:30
+ */
+public class ClusterLoadHarness {
+
+    private final Map<String, String> options;
+
+    private final LongAdder acquired = new LongAdder();
+
+    private final LongAdder waitTimeouts = new LongAdder();
+
+    private final LongAdder expiredHolds = new LongAdder();
+
+    // 租约过期后过期通知尚未到达，本节点其他线程已重新获得锁，原持有者解锁被拒绝
+    private final LongAdder rejectedUnlocks = new LongAdder();
+
+    private final LongAdder backendErrors = new LongAdder();
+
+    private final LongAdder safetyViolations = new LongAdder();
+
+    // key -> 当前处于临界区内的线程数，超过1即为安全性违例
+    private final Map<String, AtomicInteger> occupancy = new ConcurrentHashMap<>();
+
+    private ClusterLoadHarness(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("expect key=value, got:" + arg);
+            }
+            options.put(pair[0], pair[1]);
+        }
+        new ClusterLoadHarness(options).run();
+        System.exit(0);
+    }
+
+    private long option(String name, long defaultValue) {
+        return options.containsKey(name) ? Long.parseLong(options.get(name)) : defaultValue;
+    }
+
+    private double option(String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+
+    private void run() throws InterruptedException {
+        int nodes = (int) option("nodes", 4L);
+        int threads = (int) option("threads", 16L);
+        int keys = (int) option("keys", 64L);
+        long seconds = option("seconds", 10L);
+        long holdMicros = option("holdMicros", 200L);
+        long lockTime = option("lockTime", -1L);
+        long waitTimeout = option("waitTimeout", 1000L);
+        boolean batching = option("batching", 0L) != 0;
+        SimulatedDistributedLockCache backend = new SimulatedDistributedLockCache(SimulatedDistributedLockCache.Profile.builder()
+                .rttMicros(option("rttMicros", 500L))
+                .jitterMicros(option("jitterMicros", 200L))
+                .failureRate(option("failureRate", 0d))
+                .pauseEveryMills(option("pauseEveryMills", 0L))
+                .pauseMills(option("pauseMills", 0L))
+                .build());
+
+        List<DistributedLockService> services = new ArrayList<>(nodes);
+        List<LockUpdateTaskScheduler> schedulers = new ArrayList<>(nodes);
+        List<AutoCloseable> closeables = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            LockUpdateTaskScheduler scheduler = new LockUpdateTaskScheduler(
+                    (int) option("updateWorkers", 4L), option("renewMills", 5000L)
+            );
+            DistributedLockCache nodeCache = backend.forNode("node-" + i);
+            if (batching) {
+                BatchingDistributedLockCache batchingCache = new BatchingDistributedLockCache(nodeCache);
+                closeables.add(batchingCache);
+                nodeCache = batchingCache;
+            }
+            DistributedLockService service = new DistributedLockService("node-" + i, nodeCache, scheduler);
+            service.init();
+            services.add(service);
+            schedulers.add(scheduler);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        // 每个工作线程的加锁耗时样本，join之后读取
+        long[][] samples = new long[nodes * threads][];
+        List<Thread> workers = new ArrayList<>(nodes * threads);
+        for (DistributedLockService service : services) {
+            for (int t = 0; t < threads; t++) {
+                int index = workers.size();
+                Thread worker = new Thread(() -> samples[index] = work(service, keys, holdMicros, waitTimeout, lockTime, deadline));
+                worker.setName(service.getNodeClientId() + "-worker-" + t);
+                workers.add(worker);
+                worker.start();
+            }
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        report(backend, samples, seconds, nodes, threads, keys);
+
+        for (DistributedLockService service : services) {
+            service.destroy();
+        }
+        schedulers.forEach(LockUpdateTaskScheduler::shutdown);
+        for (AutoCloseable closeable : closeables) {
+            try {
+                closeable.close();
+            } catch (Exception ignored) {
+            }
+        }
+        backend.close();
+    }
+
+    private long[] work(DistributedLockService service, int keys, long holdMicros, long waitTimeout, long lockTime, long deadline) {
+        long[] latencies = new long[1024];
+        int size = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            String key = "load:" + random.nextInt(keys);
+            DistributedLock lock = DistributedReentrantLock.get(key, service);
+            long start = System.nanoTime();
+            try {
+                lock.lock(waitTimeout, lockTime);
+            } catch (DistributeLockException e) {
+                if (e.getCode() == DistributedLockResponseCode.WAIT_TIMEOUT_EXCEEDED) {
+                    waitTimeouts.increment();
+                    continue;
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                backendErrors.increment();
+                continue;
+            }
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = System.nanoTime() - start;
+            acquired.increment();
+            AtomicInteger inside = occupancy.computeIfAbsent(key, k -> new AtomicInteger());
+            if (inside.incrementAndGet() > 1) {
+                safetyViolations.increment();
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(holdMicros));
+            inside.decrementAndGet();
+            try {
+                lock.unlock();
+            } catch (DistributeLockException e) {
+                if (e.getCode() == DistributedLockResponseCode.LOCK_EXPIRED) {
+                    expiredHolds.increment();
+                } else if (e.getCode() == DistributedLockResponseCode.CANNOT_UNLOCK_OTHERS) {
+                    rejectedUnlocks.increment();
+                } else {
+                    throw e;
+                }
+            } catch (RuntimeException e) {
+                backendErrors.increment();
+            }
+        }
+        return Arrays.copyOf(latencies, size);
+    }
+
+    private void report(SimulatedDistributedLockCache backend, long[][] samples, long seconds, int nodes, int threads, int keys) {
+        long[] all = Arrays.stream(samples).filter(Objects::nonNull).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.println("==== cluster load report ====");
+        System.out.println("nodes=" + nodes + " threads/node=" + threads + " keys=" + keys + " seconds=" + seconds
+                + " options=" + options);
+        System.out.printf("throughput: %.1f acquires/s (%d total)%n", acquired.sum() / (double) seconds, acquired.sum());
+        System.out.printf("acquire latency: p50=%s p99=%s p999=%s max=%s%n",
+                formatNanos(percentile(all, 0.50)), formatNanos(percentile(all, 0.99)),
+                formatNanos(percentile(all, 0.999)), formatNanos(all.length == 0 ? 0 : all[all.length - 1]));
+        System.out.println("backend ops: setIfAbsent=" + backend.getOpCount(SimulatedDistributedLockCache.OpType.SET_IF_ABSENT)
+                + " expire=" + backend.getOpCount(SimulatedDistributedLockCache.OpType.EXPIRE)
+                + " delete=" + backend.getOpCount(SimulatedDistributedLockCache.OpType.DELETE)
+                + " batch=" + backend.getOpCount(SimulatedDistributedLockCache.OpType.BATCH)
+                + " failed=" + backend.getOpCount(SimulatedDistributedLockCache.OpType.FAILED));
+        System.out.println("wait timeouts=" + waitTimeouts.sum() + " expired holds=" + expiredHolds.sum()
+                + " rejected unlocks=" + rejectedUnlocks.sum() + " backend errors=" + backendErrors.sum());
+        System.out.println("SAFETY VIOLATIONS=" + safetyViolations.sum());
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(index, 0)];
+    }
+
+    private static String formatNanos(long nanos) {
+        return String.format("%.3fms", nanos / 1_000_000d);
+    }
+
+}
@@ -0,0 +1,456 @@
+package com.dongboy.loadtest;
+
+import com.dongboy.lock.LockMode;
+import com.dongboy.result.DistributedLockAcquireResult;
+import com.dongboy.service.DistributedLockCache;
+import com.dongboy.service.DistributedLockCacheOperation;
+import com.dongboy.util.LockUpdateThread;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 进程内模拟的共享锁后端，所有模拟节点共用一个实例，每个节点通过 forNode 取得自己的视图
+ * 每次交互模拟一次网络往返：RTT = 基础RTT + 指数分布抖动；可注入周期性停顿(所有请求排队到停顿结束)和随机失败
+ * 失败一半发生在请求送达前，一半发生在执行后响应丢失前，后者会留下孤儿租约直到过期
+ *
+ * @Author dongboy
+ * @what time    2026/10/19 17:05
+ */
+public class SimulatedDistributedLockCache implements DistributedLockCache, AutoCloseable {
+
+    public enum OpType {
+        SET_IF_ABSENT,
+        EXPIRE,
+        DELETE,
+        BATCH,
+        PUBLISH,
+        FAILED
+    }
+
+    @Getter
+    @Builder
+    public static class Profile {
+
+        // 基础往返时延(微秒)
+        @Builder.Default
+        private final long rttMicros = 500;
+
+        // 抖动均值(微秒)，按指数分布叠加在基础RTT上，形成长尾
+        @Builder.Default
+        private final long jitterMicros = 200;
+
+        // 每次交互失败的概率
+        @Builder.Default
+        private final double failureRate = 0;
+
+        // 后端停顿的周期与时长(毫秒)，模拟GC、主从切换等，为0时不停顿
+        @Builder.Default
+        private final long pauseEveryMills = 0;
+
+        @Builder.Default
+        private final long pauseMills = 0;
+
+    }
+
+    private static class Lease {
+
+        private final String value;
+
+        private volatile long expireAtNanos;
+
+        private Lease(String value, long expireAtNanos) {
+            this.value = value;
+            this.expireAtNanos = expireAtNanos;
+        }
+
+        private boolean isExpired(long now) {
+            return expireAtNanos - now <= 0;
+        }
+
+    }
+
+    private final Profile profile;
+
+    // 直接使用共享后端(不经过节点视图)时的过期事件注册归属
+    private static final String SHARED_NODE = "";
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    // 层级锁的登记，key -> (持有者@模式 -> 租约)
+    private final Map<String, Map<String, Lease>> modeLeases = new ConcurrentHashMap<>();
+
+    // 过期事件的注册，节点 -> (key -> 回调)；真实部署中每个节点各有一个客户端，注册互不覆盖
+    private final Map<String, Map<String, Runnable>> expirationEvents = new ConcurrentHashMap<>();
+
+    private final List<Consumer<String>> releaseListeners = new CopyOnWriteArrayList<>();
+
+    private final Map<String, List<Consumer<String>>> channelListeners = new ConcurrentHashMap<>();
+
+    private final Map<OpType, LongAdder> opCounts = new EnumMap<>(OpType.class);
+
+    private final long startNanos = System.nanoTime();
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(LockUpdateThread::new);
+
+    public SimulatedDistributedLockCache(Profile profile) {
+        this.profile = profile;
+        for (OpType type : OpType.values()) {
+            opCounts.put(type, new LongAdder());
+        }
+        sweeper.scheduleWithFixedDelay(this::fireExpirationEvents, 1, 1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 节点的视图，除过期事件按节点注册外，所有操作直接作用于共享后端
+     */
+    public DistributedLockCache forNode(String nodeId) {
+        return new NodeView(nodeId);
+    }
+
+    public long getOpCount(OpType type) {
+        return opCounts.get(type).sum();
+    }
+
+    private void beforeRoundTrip(OpType type) {
+        opCounts.get(type).increment();
+        awaitPause();
+        park(halfRtt());
+        if (profile.failureRate > 0 && ThreadLocalRandom.current().nextDouble() < profile.failureRate / 2) {
+            opCounts.get(OpType.FAILED).increment();
+            throw new IllegalStateException("simulated backend failure before execution");
+        }
+    }
+
+    private void afterRoundTrip() {
+        park(halfRtt());
+        if (profile.failureRate > 0 && ThreadLocalRandom.current().nextDouble() < profile.failureRate / 2) {
+            opCounts.get(OpType.FAILED).increment();
+            throw new IllegalStateException("simulated backend failure after execution");
+        }
+    }
+
+    private long halfRtt() {
+        double jitter = profile.jitterMicros > 0
+                ? -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * profile.jitterMicros : 0;
+        return (long) ((profile.rttMicros + jitter) * 1000 / 2);
+    }
+
+    private void awaitPause() {
+        if (profile.pauseEveryMills <= 0 || profile.pauseMills <= 0) {
+            return;
+        }
+        long period = TimeUnit.MILLISECONDS.toNanos(profile.pauseEveryMills);
+        long offset = (System.nanoTime() - startNanos) % period;
+        long pause = TimeUnit.MILLISECONDS.toNanos(profile.pauseMills);
+        if (offset < pause) {
+            park(pause - offset);
+        }
+    }
+
+    private static void park(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        long remain;
+        while ((remain = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remain);
+        }
+    }
+
+    private boolean applySetIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+        long now = System.nanoTime();
+        Lease lease = new Lease(value, now + timeUnit.toNanos(ttl));
+        return leases.compute(key, (k, old) -> old == null || old.isExpired(now) ? lease : old) == lease;
+    }
+
+    private void applyExpire(String key, long ttl, TimeUnit timeUnit) {
+        long now = System.nanoTime();
+        Lease lease = leases.get(key);
+        if (lease != null && !lease.isExpired(now)) {
+            lease.expireAtNanos = now + timeUnit.toNanos(ttl);
+        }
+    }
+
+    private void applyDelete(String key, String value) {
+        Lease lease = leases.get(key);
+        if (lease != null && lease.value.equals(value) && leases.remove(key, lease)) {
+            releaseListeners.forEach(listener -> listener.accept(key));
+        }
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+        beforeRoundTrip(OpType.SET_IF_ABSENT);
+        boolean acquired = applySetIfAbsent(key, value, ttl, timeUnit);
+        afterRoundTrip();
+        return acquired;
+    }
+
+    @Override
+    public DistributedLockAcquireResult trySetIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+        beforeRoundTrip(OpType.SET_IF_ABSENT);
+        DistributedLockAcquireResult result;
+        if (applySetIfAbsent(key, value, ttl, timeUnit)) {
+            result = DistributedLockAcquireResult.of(true);
+        } else {
+            Lease lease = leases.get(key);
+            long remain = lease == null ? 0 : Math.max(0, TimeUnit.NANOSECONDS.toMillis(lease.expireAtNanos - System.nanoTime()));
+            result = new DistributedLockAcquireResult(false, lease == null ? null : lease.value, remain);
+        }
+        afterRoundTrip();
+        return result;
+    }
+
+    @Override
+    public void expire(String key, long ttl, TimeUnit timeUnit) {
+        beforeRoundTrip(OpType.EXPIRE);
+        applyExpire(key, ttl, timeUnit);
+        afterRoundTrip();
+    }
+
+    @Override
+    public void expireAll(Collection<String> keys, long ttl, TimeUnit timeUnit) {
+        beforeRoundTrip(OpType.EXPIRE);
+        keys.forEach(key -> applyExpire(key, ttl, timeUnit));
+        afterRoundTrip();
+    }
+
+    @Override
+    public void delete(String key, String value) {
+        beforeRoundTrip(OpType.DELETE);
+        applyDelete(key, value);
+        afterRoundTrip();
+    }
+
+    @Override
+    public List<Boolean> executeBatch(List<DistributedLockCacheOperation> operations) {
+        beforeRoundTrip(OpType.BATCH);
+        List<Boolean> results = new ArrayList<>(operations.size());
+        for (DistributedLockCacheOperation operation : operations) {
+            switch (operation.getType()) {
+                case SET_IF_ABSENT:
+                    results.add(applySetIfAbsent(operation.getKey(), operation.getValue(), operation.getTtl(), operation.getTimeUnit()));
+                    break;
+                case EXPIRE:
+                    applyExpire(operation.getKey(), operation.getTtl(), operation.getTimeUnit());
+                    results.add(true);
+                    break;
+                case DELETE:
+                    applyDelete(operation.getKey(), operation.getValue());
+                    results.add(true);
+                    break;
+                default:
+                    throw new UnsupportedOperationException("operation type:" + operation.getType());
+            }
+        }
+        afterRoundTrip();
+        return results;
+    }
+
+    @Override
+    public boolean setModeIfCompatible(String key, String value, LockMode mode, long ttl, TimeUnit timeUnit) {
+        beforeRoundTrip(OpType.SET_IF_ABSENT);
+        long now = System.nanoTime();
+        boolean[] acquired = {false};
+        modeLeases.compute(key, (k, holders) -> {
+            Map<String, Lease> current = holders == null ? new HashMap<>() : holders;
+            current.values().removeIf(lease -> lease.isExpired(now));
+            for (Map.Entry<String, Lease> entry : current.entrySet()) {
+                LockMode heldMode = LockMode.valueOf(entry.getKey().substring(entry.getKey().lastIndexOf('@') + 1));
+                if (!entry.getValue().value.equals(value) && !mode.isCompatibleWith(heldMode)) {
+                    return current.isEmpty() ? null : current;
+                }
+            }
+            current.put(value + "@" + mode, new Lease(value, now + timeUnit.toNanos(ttl)));
+            acquired[0] = true;
+            return current;
+        });
+        afterRoundTrip();
+        return acquired[0];
+    }
+
+    @Override
+    public void expireMode(String key, String value, LockMode mode, long ttl, TimeUnit timeUnit) {
+        beforeRoundTrip(OpType.EXPIRE);
+        long now = System.nanoTime();
+        modeLeases.computeIfPresent(key, (k, holders) -> {
+            Lease lease = holders.get(value + "@" + mode);
+            if (lease != null && !lease.isExpired(now)) {
+                lease.expireAtNanos = now + timeUnit.toNanos(ttl);
+            }
+            return holders;
+        });
+        afterRoundTrip();
+    }
+
+    @Override
+    public void deleteMode(String key, String value, LockMode mode) {
+        beforeRoundTrip(OpType.DELETE);
+        modeLeases.computeIfPresent(key, (k, holders) -> {
+            holders.remove(value + "@" + mode);
+            return holders.isEmpty() ? null : holders;
+        });
+        afterRoundTrip();
+    }
+
+    @Override
+    public void registerLockExpirationEvent(String key, Runnable eventCallback) {
+        registerLockExpirationEvent(SHARED_NODE, key, eventCallback);
+    }
+
+    @Override
+    public void unregisterLockExpirationEvent(String key) {
+        unregisterLockExpirationEvent(SHARED_NODE, key);
+    }
+
+    private void registerLockExpirationEvent(String nodeId, String key, Runnable eventCallback) {
+        expirationEvents.computeIfAbsent(nodeId, k -> new ConcurrentHashMap<>()).put(key, eventCallback);
+    }
+
+    private void unregisterLockExpirationEvent(String nodeId, String key) {
+        Map<String, Runnable> nodeEvents = expirationEvents.get(nodeId);
+        if (nodeEvents != null) {
+            nodeEvents.remove(key);
+        }
+    }
+
+    @Override
+    public void subscribeLockRelease(Consumer<String> listener) {
+        releaseListeners.add(listener);
+    }
+
+    @Override
+    public boolean publish(String channel, String message) {
+        beforeRoundTrip(OpType.PUBLISH);
+        channelListeners.getOrDefault(channel, Collections.emptyList()).forEach(listener -> listener.accept(message));
+        afterRoundTrip();
+        return true;
+    }
+
+    @Override
+    public boolean subscribe(String channel, Consumer<String> listener) {
+        channelListeners.computeIfAbsent(channel, k -> new CopyOnWriteArrayList<>()).add(listener);
+        return true;
+    }
+
+    private void fireExpirationEvents() {
+        long now = System.nanoTime();
+        expirationEvents.forEach((nodeId, nodeEvents) -> nodeEvents.forEach((key, callback) -> {
+            Lease lease = leases.get(key);
+            if ((lease == null || lease.isExpired(now)) && nodeEvents.remove(key, callback)) {
+                callback.run();
+            }
+        }));
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    private class NodeView implements DistributedLockCache {
+
+        private final String nodeId;
+
+        NodeView(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        @Override
+        public boolean setIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+            return SimulatedDistributedLockCache.this.setIfAbsent(key, value, ttl, timeUnit);
+        }
+
+        @Override
+        public DistributedLockAcquireResult trySetIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+            return SimulatedDistributedLockCache.this.trySetIfAbsent(key, value, ttl, timeUnit);
+        }
+
+        @Override
+        public void expire(String key, long ttl, TimeUnit timeUnit) {
+            SimulatedDistributedLockCache.this.expire(key, ttl, timeUnit);
+        }
+
+        @Override
+        public void expireAll(Collection<String> keys, long ttl, TimeUnit timeUnit) {
+            SimulatedDistributedLockCache.this.expireAll(keys, ttl, timeUnit);
+        }
+
+        @Override
+        public void delete(String key, String value) {
+            SimulatedDistributedLockCache.this.delete(key, value);
+        }
+
+        @Override
+        public void deleteAll(Map<String, String> keyValues) {
+            SimulatedDistributedLockCache.this.deleteAll(keyValues);
+        }
+
+        @Override
+        public List<String> trySetAllIfAbsent(List<String> keys, String value, long ttl, TimeUnit timeUnit) {
+            return SimulatedDistributedLockCache.this.trySetAllIfAbsent(keys, value, ttl, timeUnit);
+        }
+
+        @Override
+        public List<Boolean> executeBatch(List<DistributedLockCacheOperation> operations) {
+            return SimulatedDistributedLockCache.this.executeBatch(operations);
+        }
+
+        @Override
+        public boolean setModeIfCompatible(String key, String value, LockMode mode, long ttl, TimeUnit timeUnit) {
+            return SimulatedDistributedLockCache.this.setModeIfCompatible(key, value, mode, ttl, timeUnit);
+        }
+
+        @Override
+        public void expireMode(String key, String value, LockMode mode, long ttl, TimeUnit timeUnit) {
+            SimulatedDistributedLockCache.this.expireMode(key, value, mode, ttl, timeUnit);
+        }
+
+        @Override
+        public void deleteMode(String key, String value, LockMode mode) {
+            SimulatedDistributedLockCache.this.deleteMode(key, value, mode);
+        }
+
+        @Override
+        public void registerLockExpirationEvent(String key, Runnable eventCallback) {
+            SimulatedDistributedLockCache.this.registerLockExpirationEvent(nodeId, key, eventCallback);
+        }
+
+        @Override
+        public void unregisterLockExpirationEvent(String key) {
+            SimulatedDistributedLockCache.this.unregisterLockExpirationEvent(nodeId, key);
+        }
+
+        @Override
+        public void subscribeLockRelease(Consumer<String> listener) {
+            SimulatedDistributedLockCache.this.subscribeLockRelease(listener);
+        }
+
+        @Override
+        public boolean publish(String channel, String message) {
+            return SimulatedDistributedLockCache.this.publish(channel, message);
+        }
+
+        @Override
+        public boolean subscribe(String channel, Consumer<String> listener) {
+            return SimulatedDistributedLockCache.this.subscribe(channel, listener);
+        }
+
+    }
+
+}
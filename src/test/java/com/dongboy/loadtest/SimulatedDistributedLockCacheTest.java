@@ -0,0 +1,35 @@
+package com.dongboy.loadtest;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @Author dongboy
+ * @what time    2026/10/23 10:40
+ */
+public class SimulatedDistributedLockCacheTest {
+
+    private final SimulatedDistributedLockCache backend = new SimulatedDistributedLockCache(
+            SimulatedDistributedLockCache.Profile.builder().rttMicros(0).jitterMicros(0).build());
+
+    @After
+    public void tearDown() {
+        backend.close();
+    }
+
+    @Test
+    public void expirationEventsOfDifferentNodesDoNotOverwriteEachOther() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(2);
+        assertTrue(backend.setIfAbsent("k", "a:1", 10_000L, TimeUnit.MILLISECONDS));
+        backend.forNode("a").registerLockExpirationEvent("k", fired::countDown);
+        backend.forNode("b").registerLockExpirationEvent("k", fired::countDown);
+        backend.delete("k", "a:1");
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+    }
+
+}
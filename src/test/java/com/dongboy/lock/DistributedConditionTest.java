@@ -0,0 +1,299 @@
+package com.dongboy.lock;
+
+import com.dongboy.loadtest.SimulatedDistributedLockCache;
+import com.dongboy.service.DistributedLockCache;
+import com.dongboy.service.DistributedLockService;
+import com.dongboy.util.LockUpdateTaskScheduler;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 两个节点共用一个模拟后端，唤醒消息通过后端广播
+ *
+ * @Author dongboy
+ * @what time    2026/10/23 20:55
+ */
+public class DistributedConditionTest {
+
+    private final SimulatedDistributedLockCache backend = new SimulatedDistributedLockCache(
+            SimulatedDistributedLockCache.Profile.builder().rttMicros(0).jitterMicros(0).build());
+
+    private final List<DistributedLockService> nodes = new ArrayList<>();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private DistributedLockService newNode(String nodeClientId, DistributedLockCache lockCache) {
+        DistributedLockService service = new DistributedLockService(nodeClientId, lockCache, new LockUpdateTaskScheduler(1, 5000));
+        service.setShutdownWaitMills(200);
+        service.init();
+        nodes.add(service);
+        return service;
+    }
+
+    private DistributedLockService newNode(String nodeClientId) {
+        return newNode(nodeClientId, backend.forNode(nodeClientId));
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        nodes.forEach(DistributedLockService::destroy);
+        backend.close();
+    }
+
+    private static void eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition not reached");
+            }
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+    }
+
+    private static boolean tryLockElsewhere(String key, DistributedLockService node) throws InterruptedException {
+        boolean[] locked = new boolean[1];
+        Thread thread = new Thread(() -> {
+            DistributedReentrantLock lock = DistributedReentrantLock.get(key, node);
+            locked[0] = lock.tryLock(null, 10_000L);
+            if (locked[0]) {
+                lock.unlock();
+            }
+        });
+        thread.start();
+        thread.join();
+        return locked[0];
+    }
+
+    private static boolean lockQuietly(DistributedReentrantLock lock) {
+        try {
+            lock.lock(2000L, 10_000L);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 在新线程上加锁并等待条件，返回前解锁，被唤醒的次数计入woken
+     */
+    private static Thread startWaiter(String key, DistributedLockService node, AtomicInteger woken) {
+        Thread waiter = new Thread(() -> {
+            DistributedReentrantLock lock = DistributedReentrantLock.get(key, node);
+            lock.lock(2000L, null);
+            try {
+                if (lock.getCondition("c").await(5, TimeUnit.SECONDS)) {
+                    woken.incrementAndGet();
+                }
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        });
+        waiter.start();
+        return waiter;
+    }
+
+    /**
+     * 在新线程上加锁后调用signal或signalAll
+     */
+    private static void signalElsewhere(String key, DistributedLockService node, Consumer<DistributedCondition> signal)
+            throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            DistributedReentrantLock lock = DistributedReentrantLock.get(key, node);
+            lock.lock(2000L, null);
+            try {
+                signal.accept(lock.getCondition("c"));
+            } finally {
+                lock.unlock();
+            }
+        });
+        thread.start();
+        thread.join();
+    }
+
+    @Test
+    public void awaitReleasesLockAndRestoresReentrancy() throws InterruptedException {
+        DistributedLockService node1 = newNode("n1");
+        DistributedLockService node2 = newNode("n2");
+        DistributedReentrantLock lock = DistributedReentrantLock.get("k", node1);
+        lock.lock(null, null);
+        lock.lock(null, null);
+        DistributedCondition condition = lock.getCondition("c");
+        boolean[] lockedWhileWaiting = new boolean[1];
+        Thread signaller = new Thread(() -> {
+            DistributedReentrantLock other = DistributedReentrantLock.get("k", node2);
+            // 等待者完全释放了两层重入，另一个节点能拿到锁
+            lockedWhileWaiting[0] = lockQuietly(other);
+            if (lockedWhileWaiting[0]) {
+                other.getCondition("c").signal();
+                other.unlock();
+            }
+        });
+        signaller.start();
+        assertTrue(condition.await(5, TimeUnit.SECONDS));
+        signaller.join();
+        assertTrue(lockedWhileWaiting[0]);
+        assertTrue(lock.isHeldByCurrentThread());
+        lock.unlock();
+        // 恢复了等待前的两层重入
+        assertTrue(lock.isHeldByCurrentThread());
+        assertFalse(tryLockElsewhere("k", node2));
+        lock.unlock();
+        assertTrue(tryLockElsewhere("k", node2));
+        assertEquals(0, node1.getConditionWaiters().conditionCount());
+    }
+
+    @Test
+    public void signalWakesOnePerNodeAndSignalAllWakesRest() throws InterruptedException {
+        DistributedLockService node1 = newNode("n1");
+        DistributedLockService node2 = newNode("n2");
+        String conditionKey = DistributedReentrantLock.get("k", node1).getCondition("c").getConditionKey();
+        AtomicInteger woken = new AtomicInteger();
+        List<Thread> waiters = new ArrayList<>();
+        for (DistributedLockService node : new DistributedLockService[]{node1, node1, node2, node2}) {
+            waiters.add(startWaiter("k", node, woken));
+        }
+        eventually(() -> node1.getConditionWaiters().count(conditionKey) == 2
+                && node2.getConditionWaiters().count(conditionKey) == 2);
+
+        signalElsewhere("k", node1, DistributedCondition::signal);
+        eventually(() -> woken.get() == 2);
+        assertEquals(1, node1.getConditionWaiters().count(conditionKey));
+        assertEquals(1, node2.getConditionWaiters().count(conditionKey));
+
+        signalElsewhere("k", node2, DistributedCondition::signalAll);
+        for (Thread waiter : waiters) {
+            waiter.join(5000);
+        }
+        assertEquals(4, woken.get());
+        // 最后一个等待者离开后不再保留该条件
+        assertEquals(0, node1.getConditionWaiters().conditionCount());
+        assertEquals(0, node2.getConditionWaiters().conditionCount());
+    }
+
+    @Test
+    public void awaitTimesOutAndReacquires() throws InterruptedException {
+        DistributedLockService node1 = newNode("n1");
+        DistributedReentrantLock lock = DistributedReentrantLock.get("k", node1);
+        lock.lock(null, null);
+        long start = System.nanoTime();
+        assertFalse(lock.getCondition("c").await(50, TimeUnit.MILLISECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+        assertTrue(lock.isHeldByCurrentThread());
+        assertEquals(0, node1.getConditionWaiters().conditionCount());
+        lock.unlock();
+    }
+
+    @Test
+    public void pollsWhenBroadcastIsUnsupported() throws InterruptedException {
+        DistributedLockService node1 = newNode("n1", new NoBroadcastCache(backend.forNode("n1")));
+        assertFalse(node1.isBroadcastSupported());
+        DistributedReentrantLock lock = DistributedReentrantLock.get("k", node1);
+        lock.lock(null, null);
+        long start = System.nanoTime();
+        // 没有任何唤醒，等待者在轮询间隔后被虚假唤醒
+        assertTrue(lock.getCondition("c").await(5, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("elapsed:" + elapsed, elapsed >= 90 && elapsed < 2000);
+        assertTrue(lock.isHeldByCurrentThread());
+        lock.unlock();
+
+        // 本节点的signal不经过广播，直接唤醒本地等待者
+        String conditionKey = lock.getCondition("c").getConditionKey();
+        AtomicInteger woken = new AtomicInteger();
+        Thread waiter = startWaiter("k", node1, woken);
+        eventually(() -> node1.getConditionWaiters().count(conditionKey) == 1);
+        signalElsewhere("k", node1, DistributedCondition::signal);
+        waiter.join(5000);
+        assertEquals(1, woken.get());
+    }
+
+    @Test
+    public void childTaskCannotAwait() {
+        DistributedLockService node1 = newNode("n1");
+        DistributedReentrantLock lock = DistributedReentrantLock.get("k", node1);
+        lock.lock(null, null);
+        try (DistributedLockContext context = DistributedLockContext.capture(node1)) {
+            context.runAsync(() -> {
+                try {
+                    DistributedReentrantLock.get("k", node1).getCondition("c").await(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, executor).join();
+            fail("expected child task rejected");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        // 被拒绝的等待者没有留在队列中，父线程仍持有锁
+        assertEquals(0, node1.getConditionWaiters().conditionCount());
+        assertTrue(lock.isHeldByCurrentThread());
+        lock.unlock();
+    }
+
+    /**
+     * 不支持广播的后端：订阅和发布都返回false
+     */
+    private static class NoBroadcastCache implements DistributedLockCache {
+
+        private final DistributedLockCache delegate;
+
+        private NoBroadcastCache(DistributedLockCache delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean setIfAbsent(String key, String value, long ttl, TimeUnit timeUnit) {
+            return delegate.setIfAbsent(key, value, ttl, timeUnit);
+        }
+
+        @Override
+        public void expire(String key, long ttl, TimeUnit timeUnit) {
+            delegate.expire(key, ttl, timeUnit);
+        }
+
+        @Override
+        public void delete(String key, String value) {
+            delegate.delete(key, value);
+        }
+
+        @Override
+        public void registerLockExpirationEvent(String key, Runnable eventCallback) {
+            delegate.registerLockExpirationEvent(key, eventCallback);
+        }
+
+        @Override
+        public void unregisterLockExpirationEvent(String key) {
+            delegate.unregisterLockExpirationEvent(key);
+        }
+
+        @Override
+        public boolean publish(String channel, String message) {
+            return false;
+        }
+
+        @Override
+        public boolean subscribe(String channel, Consumer<String> listener) {
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.dongboy.lock;
+
+import com.dongboy.loadtest.SimulatedDistributedLockCache;
+import com.dongboy.service.DistributedLockService;
+import com.dongboy.util.LockUpdateTaskScheduler;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 两个节点共用一个模拟后端
+ *
+ * @Author dongboy
+ * @what time    2026/10/22 17:00
+ */
+public class DistributedHierarchicalLockTest {
+
+    private final SimulatedDistributedLockCache backend = new SimulatedDistributedLockCache(
+            SimulatedDistributedLockCache.Profile.builder().rttMicros(0).jitterMicros(0).build());
+
+    private final DistributedLockService node1 = newNode("n1");
+
+    private final DistributedLockService node2 = newNode("n2");
+
+    private DistributedLockService newNode(String nodeClientId) {
+        DistributedLockService service = new DistributedLockService(nodeClientId, backend.forNode(nodeClientId), new LockUpdateTaskScheduler(1, 5000));
+        service.init();
+        return service;
+    }
+
+    @After
+    public void tearDown() {
+        node1.destroy();
+        node2.destroy();
+        backend.close();
+    }
+
+    private static boolean tryLock(String path, LockMode mode, DistributedLockService node) {
+        return DistributedHierarchicalLock.get(path, mode, node).tryLock(null, 10_000L);
+    }
+
+    /**
+     * 在另一个线程上尝试加锁，避免与当前线程的持有者标识相同
+     */
+    private static boolean tryLockElsewhere(String path, LockMode mode, DistributedLockService node) throws InterruptedException {
+        boolean[] locked = new boolean[1];
+        Thread thread = new Thread(() -> {
+            DistributedHierarchicalLock lock = DistributedHierarchicalLock.get(path, mode, node);
+            locked[0] = lock.tryLock(null, 10_000L);
+            if (locked[0]) {
+                lock.unlock();
+            }
+        });
+        thread.start();
+        thread.join();
+        return locked[0];
+    }
+
+    @Test
+    public void siblingUnlockKeepsSharedIntention() throws InterruptedException {
+        assertTrue(tryLock("tenant:1/order:1", LockMode.X, node1));
+        assertTrue(tryLock("tenant:1/order:2", LockMode.X, node1));
+        DistributedHierarchicalLock.get("tenant:1/order:1", LockMode.X, node1).unlock();
+        // order:2 仍被持有，tenant:1 上的IX登记不能被删除
+        assertFalse(tryLockElsewhere("tenant:1", LockMode.X, node2));
+        DistributedHierarchicalLock.get("tenant:1/order:2", LockMode.X, node1).unlock();
+        assertTrue(tryLockElsewhere("tenant:1", LockMode.X, node2));
+    }
+
+    @Test
+    public void failedSiblingAcquisitionKeepsSharedIntention() throws InterruptedException {
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            DistributedHierarchicalLock lock = DistributedHierarchicalLock.get("tenant:1/order:3", LockMode.X, node2);
+            if (lock.tryLock(null, 10_000L)) {
+                held.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+                lock.unlock();
+            }
+        });
+        holder.start();
+        assertTrue(held.await(2, TimeUnit.SECONDS));
+        assertTrue(tryLock("tenant:1/order:2", LockMode.X, node1));
+        // order:3 被node2持有，回滚时只撤销本次的引用
+        assertFalse(tryLock("tenant:1/order:3", LockMode.X, node1));
+        release.countDown();
+        holder.join();
+        // 此时 tenant:1 上只剩order:2 的IX登记
+        assertFalse(tryLockElsewhere("tenant:1", LockMode.X, node2));
+        DistributedHierarchicalLock.get("tenant:1/order:2", LockMode.X, node1).unlock();
+        assertTrue(tryLockElsewhere("tenant:1", LockMode.X, node2));
+    }
+
+    @Test
+    public void intentionConflictsWithAncestorLock() throws InterruptedException {
+        assertTrue(tryLock("tenant:1", LockMode.S, node1));
+        assertTrue(tryLockElsewhere("tenant:1/order:1", LockMode.S, node2));
+        assertFalse(tryLockElsewhere("tenant:1/order:1", LockMode.X, node2));
+        DistributedHierarchicalLock.get("tenant:1", LockMode.S, node1).unlock();
+        assertTrue(tryLockElsewhere("tenant:1/order:1", LockMode.X, node2));
+    }
+
+}
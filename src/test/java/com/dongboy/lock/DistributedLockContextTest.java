@@ -0,0 +1,117 @@
+package com.dongboy.lock;
+
+import com.dongboy.loadtest.SimulatedDistributedLockCache;
+import com.dongboy.service.DistributedLockService;
+import com.dongboy.util.LockUpdateTaskScheduler;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 子任务共享父线程的锁，另一个节点验证锁在后端是否仍被持有
+ *
+ * @Author dongboy
+ * @what time    2026/10/23 15:10
+ */
+public class DistributedLockContextTest {
+
+    private final SimulatedDistributedLockCache backend = new SimulatedDistributedLockCache(
+            SimulatedDistributedLockCache.Profile.builder().rttMicros(0).jitterMicros(0).build());
+
+    private final DistributedLockService node1 = newNode("n1");
+
+    private final DistributedLockService node2 = newNode("n2");
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private DistributedLockService newNode(String nodeClientId) {
+        DistributedLockService service = new DistributedLockService(nodeClientId, backend.forNode(nodeClientId), new LockUpdateTaskScheduler(1, 5000));
+        service.init();
+        return service;
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        node1.destroy();
+        node2.destroy();
+        backend.close();
+    }
+
+    private static boolean tryLockAndUnlock(String key, DistributedLockService node) {
+        DistributedReentrantLock lock = DistributedReentrantLock.get(key, node);
+        if (!lock.tryLock(null, 10_000L)) {
+            return false;
+        }
+        lock.unlock();
+        return true;
+    }
+
+    private static boolean eventuallyLocked(String key, DistributedLockService node) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (System.currentTimeMillis() < deadline) {
+            if (tryLockAndUnlock(key, node)) {
+                return true;
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return false;
+    }
+
+    @Test
+    public void childReentersAndUnlocksSharedLock() throws InterruptedException {
+        DistributedReentrantLock lock = DistributedReentrantLock.get("k", node1);
+        assertTrue(lock.tryLock(null, 10_000L));
+        boolean[] child = new boolean[2];
+        try (DistributedLockContext context = DistributedLockContext.capture(node1)) {
+            context.runAsync(() -> {
+                DistributedReentrantLock shared = DistributedReentrantLock.get("k", node1);
+                child[0] = shared.tryLock(null, 10_000L);
+                child[1] = shared.isHeldByCurrentThread();
+                shared.unlock();
+            }, executor).join();
+        }
+        assertTrue(child[0] && child[1]);
+        // 子任务的解锁只退出它自己的那一层
+        assertTrue(lock.isHeldByCurrentThread());
+        assertFalse(tryLockAndUnlock("k", node2));
+        lock.unlock();
+        // 上下文为子任务加的那一层在future完成之后才由子任务线程退出，后端释放可能晚于父线程解锁
+        assertTrue(eventuallyLocked("k", node2));
+    }
+
+    @Test
+    public void lockIsHeldUntilLastChildFinishes() throws InterruptedException {
+        DistributedReentrantLock lock = DistributedReentrantLock.get("k", node1);
+        assertTrue(lock.tryLock(null, 10_000L));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<Void> child;
+        try (DistributedLockContext context = DistributedLockContext.capture(node1)) {
+            child = context.runAsync(() -> {
+                started.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }, executor);
+        }
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        // 父线程提前解锁并关闭上下文，子任务仍在运行
+        lock.unlock();
+        assertFalse(tryLockAndUnlock("k", node2));
+        finish.countDown();
+        child.join();
+        assertTrue(eventuallyLocked("k", node2));
+    }
+
+}
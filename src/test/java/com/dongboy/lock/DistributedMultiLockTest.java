@@ -0,0 +1,59 @@
+package com.dongboy.lock;
+
+import com.dongboy.loadtest.SimulatedDistributedLockCache;
+import com.dongboy.service.DistributedLockService;
+import com.dongboy.util.LockUpdateTaskScheduler;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 两个节点共用一个模拟后端
+ *
+ * @Author dongboy
+ * @what time    2026/10/23 19:20
+ */
+public class DistributedMultiLockTest {
+
+    private final SimulatedDistributedLockCache backend = new SimulatedDistributedLockCache(
+            SimulatedDistributedLockCache.Profile.builder().rttMicros(0).jitterMicros(0).build());
+
+    private final DistributedLockService node1 = newNode("n1");
+
+    private final DistributedLockService node2 = newNode("n2");
+
+    private DistributedLockService newNode(String nodeClientId) {
+        DistributedLockService service = new DistributedLockService(nodeClientId, backend.forNode(nodeClientId), new LockUpdateTaskScheduler(1, 5000));
+        service.init();
+        return service;
+    }
+
+    @After
+    public void tearDown() {
+        node1.destroy();
+        node2.destroy();
+        backend.close();
+    }
+
+    @Test
+    public void failedBatchMarksOnlyConflictingKeys() {
+        DistributedReentrantLock holder = DistributedReentrantLock.get("b", node2);
+        assertTrue(holder.tryLock(null, 10_000L));
+        DistributedMultiLock multiLock = DistributedMultiLock.get(new ArrayList<>(Arrays.asList("a", "b", "c")), node1);
+        assertFalse(multiLock.tryLock(null, 10_000L));
+        // 被占用的key进入负缓存，本次回滚的key不受影响
+        assertTrue(node1.getContentionCache().isHeldElsewhere("b"));
+        assertFalse(node1.getContentionCache().isHeldElsewhere("a"));
+        assertFalse(node1.getContentionCache().isHeldElsewhere("c"));
+        DistributedReentrantLock free = DistributedReentrantLock.get("a", node1);
+        assertTrue(free.tryLock(null, 10_000L));
+        free.unlock();
+        holder.unlock();
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.dongboy.service;
+
+import com.dongboy.exception.DistributeLockException;
+import com.dongboy.exception.DistributedLockResponseCode;
+import com.dongboy.loadtest.SimulatedDistributedLockCache;
+import com.dongboy.lock.DistributedHierarchicalLock;
+import com.dongboy.lock.DistributedReentrantLock;
+import com.dongboy.lock.LockMode;
+import com.dongboy.util.LockUpdateTaskScheduler;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 节点下线时的锁释放，两个节点共用一个模拟后端
+ *
+ * @Author dongboy
+ * @what time    2026/10/22 18:10
+ */
+public class DistributedLockServiceTest {
+
+    private final SimulatedDistributedLockCache backend = new SimulatedDistributedLockCache(
+            SimulatedDistributedLockCache.Profile.builder().rttMicros(0).jitterMicros(0).build());
+
+    private final DistributedLockService leaving = newNode("leaving");
+
+    private final DistributedLockService other = newNode("other");
+
+    private DistributedLockService newNode(String nodeClientId) {
+        DistributedLockService service = new DistributedLockService(nodeClientId, backend.forNode(nodeClientId), new LockUpdateTaskScheduler(1, 5000));
+        service.setShutdownWaitMills(200);
+        service.init();
+        return service;
+    }
+
+    @After
+    public void tearDown() {
+        leaving.destroy();
+        other.destroy();
+        backend.close();
+    }
+
+    private static boolean tryLock(String key, DistributedLockService node) {
+        return DistributedReentrantLock.get(key, node).tryLock(null, 10_000L);
+    }
+
+    /**
+     * 在新线程上加锁并保持，直到release被触发后解锁
+     */
+    private static Thread holdUntil(String key, DistributedLockService node, CountDownLatch held, CountDownLatch release) {
+        Thread holder = new Thread(() -> {
+            DistributedReentrantLock lock = DistributedReentrantLock.get(key, node);
+            if (lock.tryLock(null, 10_000L)) {
+                held.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+                lock.unlock();
+            }
+        });
+        holder.start();
+        return holder;
+    }
+
+    @Test
+    public void destroyKeepsLocksOfLiveHolders() throws InterruptedException {
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = holdUntil("k", leaving, held, release);
+        assertTrue(held.await(2, TimeUnit.SECONDS));
+        leaving.destroy();
+        // 持有者仍在临界区内，其他节点不能加锁
+        assertFalse(tryLock("k", other));
+        release.countDown();
+        holder.join();
+        assertTrue(tryLock("k", other));
+    }
+
+    @Test
+    public void destroyWaitsForHoldersToUnlock() throws InterruptedException {
+        leaving.setShutdownWaitMills(5000);
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = holdUntil("k", leaving, held, release);
+        assertTrue(held.await(2, TimeUnit.SECONDS));
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+                return;
+            }
+            release.countDown();
+        }).start();
+        long start = System.currentTimeMillis();
+        leaving.destroy();
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("elapsed:" + elapsed, elapsed >= 90 && elapsed < 2000);
+        holder.join();
+        assertTrue(tryLock("k", other));
+    }
+
+    @Test
+    public void destroyRejectsNewAcquisitions() {
+        leaving.destroy();
+        try {
+            tryLock("k", leaving);
+            fail("expected shutting down");
+        } catch (DistributeLockException e) {
+            assertEquals(DistributedLockResponseCode.SERVICE_SHUTTING_DOWN, e.getCode());
+        }
+    }
+
+    @Test
+    public void destroyReleasesLocksOfDeadHolders() throws InterruptedException {
+        leaving.setShutdownWaitMills(0);
+        boolean[] locked = new boolean[2];
+        Thread holder = new Thread(() -> {
+            locked[0] = tryLock("k", leaving);
+            locked[1] = DistributedHierarchicalLock.get("tenant:1/order:1", LockMode.X, leaving).tryLock(null, 10_000L);
+        });
+        holder.start();
+        holder.join();
+        assertTrue(locked[0] && locked[1]);
+        leaving.destroy();
+        assertTrue(tryLock("k", other));
+        assertTrue(DistributedHierarchicalLock.get("tenant:1", LockMode.X, other).tryLock(null, 10_000L));
+    }
+
+}
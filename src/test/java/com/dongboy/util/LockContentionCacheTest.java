@@ -0,0 +1,68 @@
+package com.dongboy.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @Author dongboy
+ * @what time    2026/10/22 16:10
+ */
+public class LockContentionCacheTest {
+
+    @Test
+    public void holdIsCappedByMaxHold() throws InterruptedException {
+        LockContentionCache cache = new LockContentionCache(30, 16);
+        cache.markHeld("k", 10_000);
+        assertTrue(cache.isHeldElsewhere("k"));
+        assertTrue(cache.remainingHoldMills("k") <= 30);
+        Thread.sleep(50);
+        assertFalse(cache.isHeldElsewhere("k"));
+    }
+
+    @Test
+    public void unknownTtlIsHeldBriefly() throws InterruptedException {
+        LockContentionCache cache = new LockContentionCache(1000, 16);
+        cache.markHeld("k", -1);
+        assertTrue(cache.isHeldElsewhere("k"));
+        Thread.sleep(50);
+        assertFalse(cache.isHeldElsewhere("k"));
+    }
+
+    @Test
+    public void expiredLeaseIsNotCached() {
+        LockContentionCache cache = new LockContentionCache(1000, 16);
+        cache.markHeld("k", 0);
+        assertFalse(cache.isHeldElsewhere("k"));
+    }
+
+    @Test
+    public void invalidateDropsEntry() {
+        LockContentionCache cache = new LockContentionCache(1000, 16);
+        cache.markHeld("k", 500);
+        cache.invalidate("k");
+        assertFalse(cache.isHeldElsewhere("k"));
+    }
+
+    @Test
+    public void fullCacheEvictsExpiredEntriesAtMostOncePerInterval() throws InterruptedException {
+        LockContentionCache cache = new LockContentionCache(20, 2);
+        cache.markHeld("a", 20);
+        cache.markHeld("b", 20);
+        Thread.sleep(40);
+        // 首次满载时清理失效记录，腾出位置
+        cache.markHeld("c", 20);
+        assertTrue(cache.isHeldElsewhere("c"));
+        cache.markHeld("d", 20);
+        // 仍在清理间隔内且未满，正常写入
+        assertTrue(cache.isHeldElsewhere("d"));
+        cache.markHeld("e", 20);
+        // 满载且清理间隔未到，不扫描也不写入
+        assertFalse(cache.isHeldElsewhere("e"));
+        Thread.sleep(40);
+        cache.markHeld("e", 20);
+        assertTrue(cache.isHeldElsewhere("e"));
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.dongboy.util;
+
+import com.dongboy.exception.DistributeLockException;
+import com.dongboy.exception.DistributedLockResponseCode;
+import com.dongboy.loadtest.SimulatedDistributedLockCache;
+import com.dongboy.lock.DistributedReentrantLock;
+import com.dongboy.service.DistributedLockService;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 两个线程交叉加两把锁构成死锁，检测周期和等待阈值都取50ms
+ *
+ * @Author dongboy
+ * @what time    2026/10/23 14:00
+ */
+public class LockDeadlockDetectorTest {
+
+    private static final long DETECT_INTERVAL_MILLS = 50;
+
+    private final SimulatedDistributedLockCache backend = new SimulatedDistributedLockCache(
+            SimulatedDistributedLockCache.Profile.builder().rttMicros(0).jitterMicros(0).build());
+
+    private final DistributedLockService node1 = newNode("n1");
+
+    private final DistributedLockService node2 = newNode("n2");
+
+    private DistributedLockService newNode(String nodeClientId) {
+        DistributedLockService service = new DistributedLockService(nodeClientId, backend.forNode(nodeClientId), new LockUpdateTaskScheduler(1, 5000));
+        service.setDeadlockDetector(new LockDeadlockDetector(DETECT_INTERVAL_MILLS, DETECT_INTERVAL_MILLS));
+        service.setShutdownWaitMills(0);
+        service.init();
+        return service;
+    }
+
+    @After
+    public void tearDown() {
+        node1.destroy();
+        node2.destroy();
+        backend.close();
+    }
+
+    /**
+     * 持有first后等待second，记录等待的结果：加锁成功为null，否则为失败原因
+     */
+    private static class CrossLocker extends Thread {
+
+        private final DistributedLockService node;
+
+        private final String first;
+
+        private final String second;
+
+        private final CountDownLatch held;
+
+        private volatile DistributedLockResponseCode failure;
+
+        private volatile long waitedMills;
+
+        private CrossLocker(DistributedLockService node, String first, String second, CountDownLatch held) {
+            this.node = node;
+            this.first = first;
+            this.second = second;
+            this.held = held;
+        }
+
+        @Override
+        public void run() {
+            DistributedReentrantLock firstLock = DistributedReentrantLock.get(first, node);
+            firstLock.lock(null, 10_000L);
+            held.countDown();
+            try {
+                held.await();
+                long start = System.currentTimeMillis();
+                DistributedReentrantLock secondLock = DistributedReentrantLock.get(second, node);
+                try {
+                    secondLock.lock(5_000L, 10_000L);
+                    secondLock.unlock();
+                } catch (DistributeLockException e) {
+                    failure = e.getCode();
+                } finally {
+                    waitedMills = System.currentTimeMillis() - start;
+                }
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            } finally {
+                firstLock.unlock();
+            }
+        }
+
+        private String holderId() {
+            return node.getHolderId(this);
+        }
+
+    }
+
+    private static void assertOneVictim(CrossLocker a, CrossLocker b) throws InterruptedException {
+        a.join();
+        b.join();
+        CrossLocker victim = a.failure != null ? a : b;
+        CrossLocker survivor = victim == a ? b : a;
+        assertEquals(DistributedLockResponseCode.DEADLOCK_VICTIM, victim.failure);
+        assertNull(survivor.failure);
+        // 各持有一把锁时持有者标识较大的一方被选中
+        assertTrue(victim.holderId().compareTo(survivor.holderId()) > 0);
+        // 第一次发现环时只记为嫌疑，下一轮仍被选中才中止
+        assertTrue("waited:" + victim.waitedMills, victim.waitedMills >= 2 * DETECT_INTERVAL_MILLS);
+    }
+
+    @Test
+    public void sameNodeDeadlockAbortsOneVictimAfterTwoRounds() throws InterruptedException {
+        CountDownLatch held = new CountDownLatch(2);
+        CrossLocker a = new CrossLocker(node1, "k1", "k2", held);
+        CrossLocker b = new CrossLocker(node1, "k2", "k1", held);
+        a.start();
+        b.start();
+        assertOneVictim(a, b);
+    }
+
+    @Test
+    public void crossNodeDeadlockWithSeparatorsInKeys() throws InterruptedException {
+        CountDownLatch held = new CountDownLatch(2);
+        CrossLocker a = new CrossLocker(node1, "order\t1", "stock\n1", held);
+        CrossLocker b = new CrossLocker(node2, "stock\n1", "order\t1", held);
+        a.start();
+        b.start();
+        assertOneVictim(a, b);
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.dongboy.util;
+
+import com.dongboy.loadtest.SimulatedDistributedLockCache;
+import com.dongboy.lock.DistributedReentrantLock;
+import com.dongboy.service.DistributedLockService;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @Author dongboy
+ * @what time    2026/10/23 20:25
+ */
+public class LockKeyCodecTest {
+
+    @Test
+    public void plainKeepsKey() {
+        assertEquals("order:detail:1", LockKeyCodec.PLAIN.encode("order:detail:1"));
+    }
+
+    @Test
+    public void prefixAliasPrefersLongestPrefix() {
+        Map<String, String> aliases = new LinkedHashMap<>();
+        aliases.put("order:", "o:");
+        aliases.put("order:detail:", "od:");
+        LockKeyCodec codec = LockKeyCodec.prefixCompressed(aliases);
+        assertEquals("od:1", codec.encode("order:detail:1"));
+        assertEquals("o:2", codec.encode("order:2"));
+        assertEquals("user:3", codec.encode("user:3"));
+    }
+
+    @Test
+    public void digestIsNamespacePlusEncodedDigest() {
+        LockKeyCodec codec = LockKeyCodec.digest("lock:");
+        String encoded = codec.encode("订单:42");
+        assertEquals("lock:" + LockKeyDigest.of("订单:42").encode(), encoded);
+        assertEquals("lock:".length() + 22, encoded.length());
+        // 长key编码后长度不变
+        assertEquals(encoded.length(), codec.encode(String.join("", Collections.nCopies(1000, "k"))).length());
+    }
+
+    @Test
+    public void digestKeysAgreeAcrossNodes() {
+        assertEquals(LockKeyCodec.digest("lock:").encode("order:1"), LockKeyCodec.digest("lock:").encode("order:1"));
+        SimulatedDistributedLockCache backend = new SimulatedDistributedLockCache(
+                SimulatedDistributedLockCache.Profile.builder().rttMicros(0).jitterMicros(0).build());
+        DistributedLockService node1 = newNode("n1", backend);
+        DistributedLockService node2 = newNode("n2", backend);
+        try {
+            DistributedReentrantLock lock = DistributedReentrantLock.get("order:1", node1);
+            assertTrue(lock.tryLock(null, 10_000L));
+            assertEquals(LockKeyCodec.digest("lock:").encode("order:1"), lock.getBackendKey());
+            boolean[] locked = new boolean[1];
+            Thread other = new Thread(() -> locked[0] = DistributedReentrantLock.get("order:1", node2).tryLock(null, 10_000L));
+            other.start();
+            other.join();
+            assertFalse(locked[0]);
+            lock.unlock();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            node1.destroy();
+            node2.destroy();
+            backend.close();
+        }
+    }
+
+    private static DistributedLockService newNode(String nodeClientId, SimulatedDistributedLockCache backend) {
+        DistributedLockService service = new DistributedLockService(nodeClientId, backend.forNode(nodeClientId), new LockUpdateTaskScheduler(1, 5000));
+        service.setKeyCodec(LockKeyCodec.digest("lock:"));
+        service.init();
+        return service;
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.dongboy.util;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * 参考值由独立的MurmurHash3_x64_128实现(按原始C代码逐行移植)算出，
+ * 覆盖0~15字节的全部尾部长度、跨块长度以及多字节UTF-8的key
+ *
+ * @Author dongboy
+ * @what time    2026/10/23 20:10
+ */
+public class LockKeyDigestTest {
+
+    // key, seed 0 的 h1/h2, seed 42 的 h1/h2
+    private static final Object[][] VECTORS = {
+            {"", 0x0000000000000000L, 0x0000000000000000L, 0xf02aa77dfa1b8523L, 0xd1016610da11cbb9L},
+            {"a", 0x85555565f6597889L, 0xe6b53a48510e895aL, 0x28259ca4fdf626b0L, 0x25ebca9125f82b15L},
+            {"ab", 0x938b11ea16ed1b2eL, 0xe65ea7019b52d4adL, 0xd480f219e4238825L, 0x251c5fdb97d22354L},
+            {"abc", 0xb4963f3f3fad7867L, 0x3ba2744126ca2d52L, 0x0d85089fb3cff7d6L, 0x7510712b42353d30L},
+            {"abcd", 0xb87bb7d64656cd4fL, 0xf2003e886073e875L, 0xd65edb4fcecf3877L, 0xc5b223022855f8b3L},
+            {"abcde", 0x2036d091f496bbb8L, 0xc5c7eea04bcfec8cL, 0xa0aaf3ec28f50706L, 0x5be0943a5f0a3831L},
+            {"abcdef", 0xe47d86bfaca3bf55L, 0xb07109993321845cL, 0x601f629e2473ebc1L, 0xf0a5bfe16d929149L},
+            {"abcdefg", 0xa6cd2f9fc09ee499L, 0x1c3aa23ab155bbb6L, 0xbe9ac46bc7c60d5cL, 0xce46b2b558219786L},
+            {"abcdefgh", 0xcc8a0ab037ef8c02L, 0x48890d60eb6940a1L, 0xd2612e90f4c70802L, 0x4b6e8389ee947120L},
+            {"abcdefghi", 0x0547c0cff13c7964L, 0x79b53df5b741e033L, 0xbebe8e2071f97bf6L, 0x7dc61cdd7bb69597L},
+            {"abcdefghij", 0xb6c15b0d772f8c99L, 0xa24d85dc8c651ac9L, 0x4ddda4397ad01528L, 0x0de983862ea23fd6L},
+            {"abcdefghijk", 0xa895d0b8df789d02L, 0xbb7c31e2455ae771L, 0x683b2e140e34b903L, 0xbbbbac51205a8d5bL},
+            {"abcdefghijkl", 0x8ef39bb1e67ae194L, 0x1f9e303272ff621cL, 0xf47c68fdc38d89b7L, 0x948636b6ec2deedaL},
+            {"abcdefghijklm", 0x1648288da7c0fa73L, 0x2e657bff0de7cc7fL, 0x53655ea35b0e625bL, 0x12b0d875752ee665L},
+            {"abcdefghijklmn", 0x91d094a7f5c375e0L, 0xee096027d26a3324L, 0xcdc8d87a917c73f9L, 0x07aa5f613bfe75d7L},
+            {"abcdefghijklmno", 0x8abe2451890c2ffbL, 0x6a548c2d9c962a61L, 0xdb978c5565c9bd15L, 0xcf0dd997fa7b573aL},
+            {"abcdefghijklmnop", 0xc4ca3ca3224cb723L, 0x4333d695b331eb1aL, 0x013c4ef9eb92b10cL, 0x0e5883d2952bf3beL},
+            {"abcdefghijklmnopq", 0x7564747f88bda657L, 0xecda499da1110de4L, 0xb7da3a48ab3b5413L, 0x0108aa140a7e9ebeL},
+            {"abcdefghijklmnopqrstuvwxyz01234", 0x4bf06228635658a8L, 0xbedbd26090f9ef7aL, 0x98b8999db761e1dfL, 0xe72298ffbcbeb68eL},
+            {"abcdefghijklmnopqrstuvwxyz0123456", 0xeea5f18b80c96088L, 0x23bd1bc4319c6f3aL, 0x2624c9971f95c9b9L, 0x46fd558dd2db9e89L},
+            {"锁:订单:42", 0xe3a118b96933ee55L, 0x7004c76694e29b2bL, 0x9fda5e2e27351560L, 0x5fec486064fcf20dL},
+            {"ключ-блокировки", 0x2a2000e3eec67acfL, 0xa967ef2f1632e69aL, 0xbcc52848d8a2e984L, 0x7af7650371d681eaL},
+            {"🔒order", 0xb545b8841115959eL, 0xfe3e542871f72866L, 0xae5b77b0a70f666dL, 0xce441f215ea8decdL},
+    };
+
+    @Test
+    public void matchesReferenceWithSeedZero() {
+        for (Object[] vector : VECTORS) {
+            LockKeyDigest digest = LockKeyDigest.of((String) vector[0]);
+            assertEquals("h1 of " + vector[0], vector[1], digest.getHigh());
+            assertEquals("h2 of " + vector[0], vector[2], digest.getLow());
+        }
+    }
+
+    @Test
+    public void matchesReferenceWithSeed() {
+        for (Object[] vector : VECTORS) {
+            LockKeyDigest digest = LockKeyDigest.of(((String) vector[0]).getBytes(StandardCharsets.UTF_8), 42, 42);
+            assertEquals("h1 of " + vector[0], vector[3], digest.getHigh());
+            assertEquals("h2 of " + vector[0], vector[4], digest.getLow());
+        }
+    }
+
+    @Test
+    public void encodeIsBigEndianHighThenLow() {
+        LockKeyDigest digest = LockKeyDigest.of("锁:订单:42");
+        String encoded = digest.encode();
+        assertEquals(22, encoded.length());
+        byte[] bytes = Base64.getUrlDecoder().decode(encoded);
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 8; i++) {
+            high = (high << 8) | (bytes[i] & 0xff);
+            low = (low << 8) | (bytes[i + 8] & 0xff);
+        }
+        assertEquals(digest.getHigh(), high);
+        assertEquals(digest.getLow(), low);
+    }
+
+    @Test
+    public void listDigestDependsOnOrderAndBoundaries() {
+        assertEquals(LockKeyDigest.of(Arrays.asList("a", "b")), LockKeyDigest.of(Arrays.asList("a", "b")));
+        assertNotEquals(LockKeyDigest.of(Arrays.asList("a", "b")), LockKeyDigest.of(Arrays.asList("b", "a")));
+        assertNotEquals(LockKeyDigest.of(Arrays.asList("ab", "c")), LockKeyDigest.of(Arrays.asList("a", "bc")));
+        assertNotEquals(LockKeyDigest.of(Arrays.asList("a")), LockKeyDigest.of("a"));
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.dongboy.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 只用一个分段，以构造的摘要控制探测起点(小于2^32的high即为槽位下标)
+ *
+ * @Author dongboy
+ * @what time    2026/10/23 21:20
+ */
+public class LockStateTableTest {
+
+    private final Thread current = Thread.currentThread();
+
+    private final long self = current.getId();
+
+    private static LockKeyDigest digest(long home, long low) {
+        return new LockKeyDigest(home, low);
+    }
+
+    private void put(LockStateTable table, LockKeyDigest digest, long ttlMills) {
+        table.put(digest, "k" + digest.getHigh() + ":" + digest.getLow(), current, (byte) 0, ttlMills);
+    }
+
+    /**
+     * 每个记录以ttl区分，按ttl检查查找结果
+     */
+    private static void assertEntries(LockStateTable table, Map<LockKeyDigest, Long> expected) {
+        assertEquals(expected.size(), table.size());
+        expected.forEach((digest, ttl) -> assertEquals("ttl of " + digest.getHigh() + ":" + digest.getLow(),
+                (long) ttl, table.getTtlMills(digest)));
+    }
+
+    @Test
+    public void collidingKeysWrapAroundAndSurviveMiddleRemoval() {
+        LockStateTable table = new LockStateTable(1);
+        // 初始容量16：a、b、c都从14开始探测，依次占据14、15、0；d从15开始落在1；e从0开始落在2
+        LockKeyDigest a = digest(14, 1);
+        LockKeyDigest b = digest(14, 2);
+        LockKeyDigest c = digest(14, 3);
+        LockKeyDigest d = digest(15, 4);
+        LockKeyDigest e = digest(0, 5);
+        Map<LockKeyDigest, Long> expected = new HashMap<>();
+        long ttl = 100;
+        for (LockKeyDigest digest : new LockKeyDigest[]{a, b, c, d, e}) {
+            put(table, digest, ttl);
+            expected.put(digest, ttl++);
+        }
+        assertEntries(table, expected);
+
+        // 删除探测链中间的b，后续记录前移填洞后仍能找到
+        assertTrue(table.remove(b, self));
+        expected.remove(b);
+        assertEquals(0, table.getOwnerId(b));
+        assertEntries(table, expected);
+
+        // 删除链首，再删除跨过末尾的记录
+        assertTrue(table.remove(a, self));
+        expected.remove(a);
+        assertEntries(table, expected);
+        assertTrue(table.remove(d, self));
+        expected.remove(d);
+        assertEntries(table, expected);
+
+        // 重新插入后覆盖写入同一槽位，不产生重复记录
+        put(table, b, 200);
+        put(table, b, 201);
+        expected.put(b, 201L);
+        assertEntries(table, expected);
+    }
+
+    @Test
+    public void growsAndShrinks() {
+        LockStateTable table = new LockStateTable(1);
+        Map<LockKeyDigest, Long> expected = new HashMap<>();
+        List<LockKeyDigest> digests = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            // 每8个key共用一个探测起点，扩容前后都有成簇的冲突
+            LockKeyDigest digest = digest(i / 8, i);
+            digests.add(digest);
+            put(table, digest, i + 1);
+            expected.put(digest, (long) i + 1);
+        }
+        assertEntries(table, expected);
+        for (int i = 0; i < 990; i++) {
+            assertTrue(table.remove(digests.get(i), self));
+            expected.remove(digests.get(i));
+        }
+        // 缩容后剩余记录仍能找到
+        assertEntries(table, expected);
+        for (int i = 0; i < 990; i++) {
+            assertEquals(0, table.getOwnerId(digests.get(i)));
+        }
+    }
+
+    @Test
+    public void depthChangesRequireOwner() {
+        LockStateTable table = new LockStateTable(1);
+        LockKeyDigest digest = digest(3, 1);
+        long other = self + 1;
+        assertEquals(0, table.incrementDepth(digest, self));
+        assertEquals(-1, table.decrementDepth(digest, self));
+        put(table, digest, 100);
+        assertEquals(0, table.incrementDepth(digest, other));
+        assertEquals(-1, table.decrementDepth(digest, other));
+        assertFalse(table.setDepth(digest, other, 5));
+        assertEquals(2, table.incrementDepth(digest, self));
+        assertEquals(2, table.getDepth(digest, self));
+        assertEquals(0, table.getDepth(digest, other));
+        assertEquals(1, table.decrementDepth(digest, self));
+        assertEquals(0, table.decrementDepth(digest, self));
+        // 层数为0表示正在释放，不能再重入或继续减
+        assertEquals(0, table.incrementDepth(digest, self));
+        assertEquals(-1, table.decrementDepth(digest, self));
+        assertFalse(table.remove(digest, other));
+        assertTrue(table.remove(digest, self));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void expirationIsPerThread() {
+        LockStateTable table = new LockStateTable(1);
+        LockKeyDigest digest = digest(3, 1);
+        assertFalse(table.isExpired(digest, self));
+        table.markExpired(digest, self);
+        assertTrue(table.isExpired(digest, self));
+        assertFalse(table.isExpired(digest, self + 1));
+        assertFalse(table.isExpired(digest(3, 2), self));
+        table.clearExpired(digest, self);
+        assertFalse(table.isExpired(digest, self));
+    }
+
+    @Test
+    public void purgeDropsDeadOwnersAndTheirExpiredHolds() throws InterruptedException {
+        LockStateTable table = new LockStateTable(1);
+        LockKeyDigest live = digest(3, 1);
+        LockKeyDigest dead = digest(4, 2);
+        put(table, live, 100);
+        table.markExpired(live, self);
+        Thread worker = new Thread(() -> {
+        });
+        table.put(dead, "dead", worker, (byte) 0, 100);
+        table.markExpired(dead, worker.getId());
+        worker.start();
+        worker.join();
+
+        table.purgeDeadThreads();
+        assertSame(current, table.getOwner(live));
+        assertTrue(table.isExpired(live, self));
+        // 死亡线程不再登记，过期记录随之清理；锁记录由调用方先行释放
+        assertNull(table.getOwner(dead));
+        assertFalse(table.isExpired(dead, worker.getId()));
+        List<String> held = new ArrayList<>();
+        table.forEachHeld((lockKey, owner) -> held.add(lockKey));
+        assertEquals(1, held.size());
+    }
+
+}